@@ -0,0 +1,14 @@
+// Shard keys used by the fixed accounts service.
+const dbName = process.env.DB_NAME || "bank-products";
+
+sh.addShard("shard1/shard1:27018");
+sh.addShard("shard2/shard2:27018");
+sh.enableSharding(dbName);
+
+// Request queries filter by accountId, so mongos can route them to one shard.
+// The other Transactions indexes are created by the service at startup (MongoConfig.transactionIndexes).
+sh.shardCollection(`${dbName}.Transactions`, { accountId: "hashed" });
+// Sequence stripes (sequence.stripes > 1) spread over the shards instead of one hot document.
+sh.shardCollection(`${dbName}.sequence`, { _id: "hashed" });
+
+print(`Sharding ready for ${dbName}`);
@@ -2,15 +2,21 @@ package com.bank.bootcamp.fixedaccounts;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.cloud.netflix.eureka.EnableEurekaClient;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableEurekaClient
+@EnableScheduling
 public class FixedAcountsApplication {
 
   public static void main(String[] args) {
     System.setProperty("jdk.tls.client.protocols", "TLSv1.2");
-    SpringApplication.run(FixedAcountsApplication.class, args);
+    var application = new SpringApplication(FixedAcountsApplication.class);
+    // Registra las fases del arranque para exponerlas como metricas (ver StartupConfig)
+    application.setApplicationStartup(new BufferingApplicationStartup(4096));
+    application.run(args);
   }
 
 }
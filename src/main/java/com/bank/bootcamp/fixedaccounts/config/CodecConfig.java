@@ -0,0 +1,34 @@
+package com.bank.bootcamp.fixedaccounts.config;
+
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Binary Smile encoding for service-to-service calls.
+ * <p>
+ * JSON stays first in the codec list, so browsers and other clients that accept anything keep
+ * receiving JSON; only callers asking for {@code application/x-jackson-smile} get Smile. The
+ * customizer is shared by the WebFlux server and the auto-configured {@code WebClient.Builder}.
+ */
+@Configuration
+public class CodecConfig {
+
+  public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+  @Bean
+  public CodecCustomizer smileCodecCustomizer(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+    // Same Jackson settings (fechas, modulos) que el codec JSON, solo cambia el formato
+    var smileMapper = objectMapperBuilder.factory(new SmileFactory()).build();
+    // Sin tipos explicitos los codecs de Smile se registran con los tipos de JSON
+    return configurer -> {
+      configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smileMapper, APPLICATION_SMILE));
+      configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smileMapper, APPLICATION_SMILE));
+    };
+  }
+}
@@ -0,0 +1,57 @@
+package com.bank.bootcamp.fixedaccounts.config;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import org.springframework.cloud.bootstrap.config.PropertySourceLocator;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertiesPropertySource;
+import org.springframework.core.env.PropertySource;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Adds the last configuration received from the config server, saved by {@link ConfigCacheWriter},
+ * as the lowest-precedence bootstrap property source.
+ * <p>
+ * When the config server answers its values win as usual; when it is down or slow the instance
+ * still starts with the last good configuration instead of only the local defaults. Registered
+ * through {@code META-INF/spring.factories} so it runs in the bootstrap context.
+ */
+@Slf4j
+public class ConfigCachePropertySourceLocator implements PropertySourceLocator, Ordered {
+
+  public static final String ENABLED_PROPERTY = "config.cache.enabled";
+  public static final String PATH_PROPERTY = "config.cache.path";
+  public static final String SOURCE_NAME = "configCache";
+
+  @Override
+  public PropertySource<?> locate(Environment environment) {
+    if (!environment.getProperty(ENABLED_PROPERTY, Boolean.class, Boolean.FALSE))
+      return null;
+    var cacheFile = cacheFile(environment);
+    if (!Files.isReadable(cacheFile))
+      return null;
+    var properties = new Properties();
+    try (var reader = Files.newBufferedReader(cacheFile)) {
+      properties.load(reader);
+    } catch (IOException e) {
+      log.warn("Ignoring unreadable config cache {}", cacheFile, e);
+      return null;
+    }
+    return new PropertiesPropertySource(SOURCE_NAME, properties);
+  }
+
+  @Override
+  public int getOrder() {
+    return Ordered.LOWEST_PRECEDENCE;
+  }
+
+  /** {@code config.cache.path}, by default under the home of the user running the service, never a shared directory. */
+  static Path cacheFile(Environment environment) {
+    return Paths.get(environment.getProperty(PATH_PROPERTY, Paths.get(System.getProperty("user.home"), ".bank-products",
+        environment.getProperty("spring.application.name", "application") + "-config-cache.properties").toString()));
+  }
+}
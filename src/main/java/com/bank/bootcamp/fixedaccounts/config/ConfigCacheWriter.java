@@ -0,0 +1,79 @@
+package com.bank.bootcamp.fixedaccounts.config;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.stereotype.Component;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Saves the properties received from the config server once the application is ready, so the
+ * next start can fall back on them through {@link ConfigCachePropertySourceLocator}.
+ * <p>
+ * The file is only readable by the user running the service. Secrets are never written: keys that
+ * look like one and URIs with credentials are left out, so they must reach a start without the
+ * config server through the environment.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(ConfigCachePropertySourceLocator.ENABLED_PROPERTY)
+public class ConfigCacheWriter {
+
+  static final Pattern SECRET_KEY = Pattern.compile("(?i).*(password|passwd|secret|token|credential|private|key).*");
+  static final Pattern CREDENTIALS_IN_URI = Pattern.compile(".*://[^/@\\s]+:[^/@\\s]*@.*");
+
+  private final ConfigurableEnvironment environment;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void save() {
+    var properties = new Properties();
+    // Las fuentes vienen de mayor a menor precedencia, la primera que define una propiedad gana
+    environment.getPropertySources().stream()
+        .filter(source -> source.getName().contains("configserver:"))
+        .filter(EnumerablePropertySource.class::isInstance)
+        .map(EnumerablePropertySource.class::cast)
+        .forEach(source -> {
+          for (var name : source.getPropertyNames())
+            if (!properties.containsKey(name) && source.getProperty(name) != null)
+              properties.setProperty(name, String.valueOf(source.getProperty(name)));
+        });
+    if (properties.isEmpty())
+      return; // el config server no respondio, se conserva la ultima copia buena
+    properties.stringPropertyNames().stream()
+        .filter(name -> SECRET_KEY.matcher(name).matches() || CREDENTIALS_IN_URI.matcher(properties.getProperty(name)).matches())
+        .forEach(properties::remove);
+
+    var cacheFile = ConfigCachePropertySourceLocator.cacheFile(environment);
+    var tmp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+    try {
+      var posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+      if (cacheFile.getParent() != null)
+        Files.createDirectories(cacheFile.getParent(), posix
+            ? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")) }
+            : new FileAttribute<?>[0]);
+      Files.deleteIfExists(tmp);
+      // Se crea con permisos de solo el dueno antes de escribir nada
+      Files.createFile(tmp, posix
+          ? new FileAttribute<?>[] { PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")) }
+          : new FileAttribute<?>[0]);
+      try (var writer = Files.newBufferedWriter(tmp)) {
+        properties.store(writer, "Last configuration received from the config server, without secrets");
+      }
+      Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Could not save config cache {}", cacheFile, e);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.bank.bootcamp.fixedaccounts.config;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import java.math.BigDecimal;
+import java.util.List;
+import org.bson.types.Decimal128;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import com.bank.bootcamp.fixedaccounts.entity.Money;
+import com.bank.bootcamp.fixedaccounts.entity.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Configuration
+@Slf4j
+public class MongoConfig {
+
+  /**
+   * Indexes of {@code Transactions}, declared only here. Automatic index creation is off, so they are
+   * created once the application is ready; creating an index that already exists does nothing.
+   */
+  public static List<Index> transactionIndexes() {
+    return List.of(
+        // Movimientos por periodo, extractos y el escaneo del ledger, que lee cada cuenta en orden de fecha;
+        // el numero de operacion desempata el orden del extracto sin ordenar en memoria
+        new Index().on("accountId", Sort.Direction.ASC).on("registerDate", Sort.Direction.ASC).on("operationNumber", Sort.Direction.ASC),
+        // Versiones para los GET condicionales: ultimo numero de operacion y ultima escritura de la cuenta
+        new Index().on("accountId", Sort.Direction.ASC).on("operationNumber", Sort.Direction.DESC),
+        new Index().on("accountId", Sort.Direction.ASC).on("lastModified", Sort.Direction.DESC),
+        // Un abono reenviado con la misma clave no se registra dos veces
+        new Index().on("accountId", Sort.Direction.ASC).on("idempotencyKey", Sort.Direction.ASC).unique()
+            .partial(PartialIndexFilter.of(where("idempotencyKey").exists(true))),
+        // Solo las transferencias enviadas, que el conciliador busca por fecha
+        new Index().on("registerDate", Sort.Direction.ASC)
+            .partial(PartialIndexFilter.of(where("transferTargetAccountType").exists(true))));
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void ensureIndexes(ApplicationReadyEvent event) {
+    ensureTransactionIndexes(event.getApplicationContext().getBean(ReactiveMongoTemplate.class))
+        .subscribe(null, e -> log.warn("Could not create the Transactions indexes", e));
+  }
+
+  public Mono<Void> ensureTransactionIndexes(ReactiveMongoTemplate mongoTemplate) {
+    var indexOps = mongoTemplate.indexOps(Transaction.class);
+    return Flux.fromIterable(transactionIndexes())
+        .concatMap(indexOps::ensureIndex)
+        .then();
+  }
+
+  @Bean
+  public MongoCustomConversions mongoCustomConversions() {
+    return new MongoCustomConversions(List.of(
+        new MoneyToDecimal128Converter(),
+        new Decimal128ToMoneyConverter(),
+        new DoubleToMoneyConverter()));
+  }
+
+  @WritingConverter
+  static class MoneyToDecimal128Converter implements Converter<Money, Decimal128> {
+    @Override
+    public Decimal128 convert(Money source) {
+      return new Decimal128(source.toBigDecimal());
+    }
+  }
+
+  @ReadingConverter
+  static class Decimal128ToMoneyConverter implements Converter<Decimal128, Money> {
+    @Override
+    public Money convert(Decimal128 source) {
+      return Money.of(source.bigDecimalValue());
+    }
+  }
+
+  /** Amounts written before the Decimal128 migration ran. */
+  @ReadingConverter
+  static class DoubleToMoneyConverter implements Converter<Double, Money> {
+    @Override
+    public Money convert(Double source) {
+      return Money.of(BigDecimal.valueOf(source));
+    }
+  }
+}
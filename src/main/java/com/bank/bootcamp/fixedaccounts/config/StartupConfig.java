@@ -0,0 +1,77 @@
+package com.bank.bootcamp.fixedaccounts.config;
+
+import java.util.Arrays;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.annotation.Schedules;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+import com.bank.bootcamp.fixedaccounts.controller.AccountController;
+import com.bank.bootcamp.fixedaccounts.repository.AccountRepository;
+import com.bank.bootcamp.fixedaccounts.repository.TransactionRepository;
+import com.bank.bootcamp.fixedaccounts.service.AccountService;
+import com.bank.bootcamp.fixedaccounts.service.CustomerExistenceFilter;
+import com.bank.bootcamp.fixedaccounts.webclient.AccountWebClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Startup tuning used by the {@code fast-startup} profile.
+ * <p>
+ * With {@code spring.main.lazy-initialization=true} everything except the request hot path is
+ * created on first use. Startup steps recorded by {@link BufferingApplicationStartup} are published
+ * as the {@code application.startup.step} timer, next to Boot's {@code application.started.time}
+ * and {@code application.ready.time}.
+ */
+@Configuration
+public class StartupConfig {
+
+  /**
+   * Hot path beans, plus every bean with {@code @Scheduled} methods: nothing else depends on them, so
+   * if created lazily they would never be created and their schedules would never register.
+   */
+  @Bean
+  public static LazyInitializationExcludeFilter hotPathBeans() {
+    var hotPath = LazyInitializationExcludeFilter.forBeanTypes(AccountController.class, AccountService.class,
+        AccountRepository.class, TransactionRepository.class, AccountWebClient.class, CustomerExistenceFilter.class);
+    return (beanName, beanDefinition, beanType) -> hotPath.isExcluded(beanName, beanDefinition, beanType)
+        || hasScheduledMethods(beanType);
+  }
+
+  static boolean hasScheduledMethods(Class<?> beanType) {
+    if (beanType == null)
+      return false;
+    return Arrays.stream(ReflectionUtils.getUniqueDeclaredMethods(ClassUtils.getUserClass(beanType)))
+        .anyMatch(method -> AnnotatedElementUtils.hasAnnotation(method, Scheduled.class)
+            || AnnotatedElementUtils.hasAnnotation(method, Schedules.class));
+  }
+
+  @Bean
+  public ApplicationListener<ApplicationReadyEvent> startupStepMetrics(MeterRegistry meterRegistry) {
+    return event -> {
+      if (!(event.getApplicationContext().getApplicationStartup() instanceof BufferingApplicationStartup))
+        return;
+      var startup = (BufferingApplicationStartup) event.getApplicationContext().getApplicationStartup();
+      startup.getBufferedTimeline().getEvents().forEach(step -> Timer.builder("application.startup.step")
+          .description("Duration of each startup step recorded while the application context was built")
+          .tag("step", step.getStartupStep().getName())
+          .register(meterRegistry)
+          .record(step.getDuration()));
+    };
+  }
+
+  /** Run started by the appcds Maven profile: stop as soon as the context is ready so the JVM dumps the class archive. */
+  @Bean
+  @ConditionalOnProperty("startup.training-run")
+  public ApplicationListener<ApplicationReadyEvent> trainingRunExit() {
+    return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+  }
+}
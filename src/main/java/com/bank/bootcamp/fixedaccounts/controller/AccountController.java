@@ -1,18 +1,41 @@
 package com.bank.bootcamp.fixedaccounts.controller;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import org.springframework.core.env.Environment;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import com.bank.bootcamp.fixedaccounts.config.CodecConfig;
 import com.bank.bootcamp.fixedaccounts.dto.BalanceDTO;
 import com.bank.bootcamp.fixedaccounts.dto.CreateAccountDTO;
 import com.bank.bootcamp.fixedaccounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.fixedaccounts.dto.CustomerPositionDTO;
+import com.bank.bootcamp.fixedaccounts.dto.StatementFormat;
+import com.bank.bootcamp.fixedaccounts.dto.TransactionBatchResultDTO;
 import com.bank.bootcamp.fixedaccounts.entity.Account;
 import com.bank.bootcamp.fixedaccounts.entity.Transaction;
 import com.bank.bootcamp.fixedaccounts.service.AccountService;
+import com.bank.bootcamp.fixedaccounts.service.BalanceEventService;
+import com.bank.bootcamp.fixedaccounts.service.CustomerPositionService;
+import com.bank.bootcamp.fixedaccounts.service.StatementService;
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -23,10 +46,15 @@ import reactor.core.publisher.Mono;
 public class AccountController {
 
   private final AccountService accountService;
+  private final BalanceEventService balanceEventService;
+  private final StatementService statementService;
+  private final CustomerPositionService customerPositionService;
+  private final Environment env;
   
   @GetMapping("/balance/{accountId}")
-  public Mono<BalanceDTO> getBalanceByAccountId(@PathVariable("accountId") String accountId) {
-    return accountService.getBalanceByAccountId(accountId);
+  public Mono<ResponseEntity<BalanceDTO>> getBalanceByAccountId(@PathVariable("accountId") String accountId, ServerWebExchange exchange) {
+    return conditional(exchange, accountService.getBalanceVersion(accountId), CacheControl.noCache().cachePrivate(),
+        version -> accountService.getBalanceByAccountIdAndVersion(accountId, version));
   }
   
   @GetMapping("/balance/byCustomer/{customerId}")
@@ -34,6 +62,23 @@ public class AccountController {
     return accountService.getBalancesByCustomerId(customerId);
   }
   
+  @GetMapping("/position/{customerId}")
+  public Mono<CustomerPositionDTO> getPositionByCustomerId(@PathVariable("customerId") String customerId) {
+    return customerPositionService.getPositionByCustomerId(customerId);
+  }
+  
+  @GetMapping(value = "/balance/{accountId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<BalanceDTO>> getBalanceEventsByAccountId(@PathVariable("accountId") String accountId,
+      @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+    return balanceEventService.getBalanceEventsByAccountId(accountId, lastEventId);
+  }
+  
+  @GetMapping(value = "/balance/byCustomer/{customerId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<BalanceDTO>> getBalanceEventsByCustomerId(@PathVariable("customerId") String customerId,
+      @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+    return balanceEventService.getBalanceEventsByCustomerId(customerId, lastEventId);
+  }
+  
   @PostMapping
   public Mono<String> createAccount(@RequestBody CreateAccountDTO dto) throws Exception {
     return accountService.createAccount(dto).map(Account::getId);
@@ -44,16 +89,54 @@ public class AccountController {
     return accountService.createTransaction(dto).map(Transaction::getOperationNumber);
   }
   
+  @PostMapping("/transaction/batch")
+  public Flux<TransactionBatchResultDTO> createTransactions(@RequestBody List<CreateTransactionDTO> dtos) {
+    return accountService.createTransactions(dtos);
+  }
+  
   @GetMapping("/byCustomer/{customerId}")
   public Flux<Account> getAccountsByCustomer(@PathVariable("customerId") String customerId) {
     return accountService.getAccountsByCustomer(customerId);
   }
   
   @GetMapping("movements/{accountId}/{year}/{month}")
-  public Flux<Transaction> getMovementsByAccountAndPeriod(
+  public Mono<ResponseEntity<Flux<Transaction>>> getMovementsByAccountAndPeriod(
       @PathVariable("accountId") String accountId,
-      @PathVariable("year") Integer year, @PathVariable("month") Integer month) {
-    return accountService.getTransactionsByAccountIdAndPeriod(accountId, LocalDate.of(year, month, 1));
+      @PathVariable("year") Integer year, @PathVariable("month") Integer month, ServerWebExchange exchange) {
+    var period = LocalDate.of(year, month, 1);
+    // Un mes cerrado ya no cambia, los caches intermedios pueden servirlo sin revalidar
+    var sealedMaxAge = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("movements.sealed-month.max-age-seconds")).orElse("31536000")));
+    var cacheControl = accountService.isSealedPeriod(period)
+        ? CacheControl.maxAge(sealedMaxAge).sMaxAge(sealedMaxAge).cachePublic()
+        : CacheControl.noCache().cachePrivate();
+    return conditional(exchange, accountService.getMovementsVersion(accountId, period), cacheControl,
+        version -> Mono.just(accountService.getTransactionsByAccountIdAndPeriod(accountId, period)));
+  }
+  
+  @GetMapping("statement/{accountId}/{year}")
+  public Mono<Void> exportStatement(
+      @PathVariable("accountId") String accountId, @PathVariable("year") Integer year,
+      @RequestParam(name = "format", defaultValue = "CSV") StatementFormat format, ServerHttpResponse response) {
+    response.getHeaders().setContentType(MediaType.parseMediaType(format.getMediaType()));
+    response.getHeaders().setContentDisposition(ContentDisposition.attachment()
+        .filename(String.format("statement-%s-%s.%s", accountId, year, format.getExtension())).build());
+    return response.writeWith(statementService.exportStatement(accountId, year, format, response.bufferFactory()));
+  }
+  
+  /**
+   * Answers 304 when {@code If-None-Match} matches the version, without building the body. The
+   * ETag also names the wire format, since JSON and Smile bodies of one version differ. The body is
+   * built for the version in the ETag, never from a value cached before that version.
+   */
+  private <T> Mono<ResponseEntity<T>> conditional(ServerWebExchange exchange, Mono<String> version, CacheControl cacheControl, Function<String, Mono<T>> body) {
+    var smile = exchange.getRequest().getHeaders().getAccept().stream().anyMatch(CodecConfig.APPLICATION_SMILE::equalsTypeAndSubtype);
+    return version
+        .flatMap(v -> {
+          var etag = smile ? v + "-smile" : v;
+          return exchange.checkNotModified(etag)
+            ? Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).varyBy(HttpHeaders.ACCEPT).<T>build())
+            : body.apply(v).map(content -> ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).varyBy(HttpHeaders.ACCEPT).body(content));
+        });
   }
   
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.bank.bootcamp.fixedaccounts.dto;
+
+import org.springframework.data.annotation.Id;
+import com.bank.bootcamp.fixedaccounts.entity.Money;
+import lombok.Data;
+
+@Data
+public class AccountTotalDTO {
+
+  @Id
+  private String accountId;
+  private Money total;
+  private Long monthlyMovements;
+}
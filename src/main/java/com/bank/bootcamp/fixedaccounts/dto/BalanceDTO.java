@@ -1,5 +1,6 @@
 package com.bank.bootcamp.fixedaccounts.dto;
 
+import com.bank.bootcamp.fixedaccounts.entity.Money;
 import lombok.Data;
 
 @Data
@@ -7,7 +8,7 @@ public class BalanceDTO {
   private String accountId;
   private String type;
   private Integer accountNumber;
-  private Double amount;
+  private Money amount;
   private Integer monthlyMovementLimit;
   private Long monthlyMovementsAvailable;
 }
\ No newline at end of file
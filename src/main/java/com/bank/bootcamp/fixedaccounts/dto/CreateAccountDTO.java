@@ -1,5 +1,6 @@
 package com.bank.bootcamp.fixedaccounts.dto;
 
+import com.bank.bootcamp.fixedaccounts.entity.Money;
 import lombok.Data;
 
 @Data
@@ -7,5 +8,5 @@ public class CreateAccountDTO {
 
   private String customerId;
   private Integer assignedDayNumberForMovement;
-  private Double openingAmount;
+  private Money openingAmount;
 }
@@ -1,5 +1,6 @@
 package com.bank.bootcamp.fixedaccounts.dto;
 
+import com.bank.bootcamp.fixedaccounts.entity.Money;
 import lombok.Data;
 
 @Data
@@ -8,7 +9,9 @@ public class CreateTransactionDTO {
   private String accountId;
   private String agent;
   private String description;
-  private Double amount;
-  private Double openingAmount;
+  private Money amount;
+  private Money openingAmount;
   private Boolean createByComission = Boolean.FALSE;
+  /** Sent by the caller when it may repeat the request; the same key on the same account registers one transaction. */
+  private String idempotencyKey;
 }
@@ -0,0 +1,15 @@
+package com.bank.bootcamp.fixedaccounts.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class CustomerPositionDTO {
+
+  private String customerId;
+  private List<BalanceDTO> balances = new ArrayList<>();
+  /** Products that did not answer in time; their balances are missing from the position. */
+  private List<AccountType> unavailableProducts = new ArrayList<>();
+  private Boolean complete;
+}
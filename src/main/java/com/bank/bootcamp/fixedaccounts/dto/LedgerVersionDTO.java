@@ -0,0 +1,12 @@
+package com.bank.bootcamp.fixedaccounts.dto;
+
+import java.time.LocalDateTime;
+import lombok.Data;
+
+@Data
+public class LedgerVersionDTO {
+
+  private Long movements;
+  private Integer lastOperationNumber;
+  private LocalDateTime lastModified;
+}
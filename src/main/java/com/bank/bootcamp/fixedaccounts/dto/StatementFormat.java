@@ -0,0 +1,23 @@
+package com.bank.bootcamp.fixedaccounts.dto;
+
+public enum StatementFormat {
+
+  CSV("text/csv", "csv"), 
+  PDF("application/pdf", "pdf");
+  
+  private String mediaType;
+  private String extension;
+  
+  private StatementFormat(String mediaType, String extension) {
+    this.mediaType = mediaType;
+    this.extension = extension;
+  }
+  
+  public String getMediaType() {
+    return this.mediaType;
+  }
+  
+  public String getExtension() {
+    return this.extension;
+  }
+}
@@ -0,0 +1,11 @@
+package com.bank.bootcamp.fixedaccounts.dto;
+
+import lombok.Data;
+
+/** Outcome of one transaction of a batch: the operation number, or the reason it was rejected. */
+@Data
+public class TransactionBatchResultDTO {
+
+  private Integer operationNumber;
+  private String error;
+}
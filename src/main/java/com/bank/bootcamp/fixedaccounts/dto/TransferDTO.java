@@ -1,5 +1,6 @@
 package com.bank.bootcamp.fixedaccounts.dto;
 
+import com.bank.bootcamp.fixedaccounts.entity.Money;
 import lombok.Data;
 
 @Data
@@ -8,6 +9,6 @@ public class TransferDTO {
   private String sourceAccountId;
   private AccountType targetAccountType;
   private String targetAccountId;
-  private Double amount;
+  private Money amount;
 
 }
@@ -1,6 +1,7 @@
 package com.bank.bootcamp.fixedaccounts.entity;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import lombok.Data;
 
@@ -11,6 +12,7 @@ public class Account {
   @Id
   private String id;
   
+  @Indexed(unique = true)
   private String customerId;
   private Integer monthlyMovementLimit = 1;
   private Integer assignedDayNumberForMovement;
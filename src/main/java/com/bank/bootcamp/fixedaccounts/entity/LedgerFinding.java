@@ -0,0 +1,12 @@
+package com.bank.bootcamp.fixedaccounts.entity;
+
+import lombok.Data;
+
+@Data
+public class LedgerFinding {
+
+  private LedgerFindingType type;
+  private String accountId;
+  private Integer operationNumber;
+  private String detail;
+}
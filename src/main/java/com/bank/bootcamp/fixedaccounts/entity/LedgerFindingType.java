@@ -0,0 +1,11 @@
+package com.bank.bootcamp.fixedaccounts.entity;
+
+public enum LedgerFindingType {
+
+  DUPLICATE_OPERATION_NUMBER,
+  MISSING_OPERATION_NUMBER,
+  UNKNOWN_OPERATION_NUMBER,
+  UNCONFIRMED_TRANSFER,
+  ORPHAN_COMISSION,
+  NEGATIVE_BALANCE
+}
@@ -0,0 +1,36 @@
+package com.bank.bootcamp.fixedaccounts.entity;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+/**
+ * Result of one ledger integrity scan. The ID is the scan date, so only one instance runs the
+ * nightly scan. Every finding is counted, only the first ones are kept as samples.
+ */
+@Document("LedgerScanReports")
+@Data
+public class LedgerScanReport {
+
+  public static final String RUNNING = "RUNNING";
+  public static final String COMPLETED = "COMPLETED";
+  public static final String FAILED = "FAILED";
+
+  @Id
+  private String id;
+  private String status;
+  private LocalDateTime startedAt;
+  private LocalDateTime finishedAt;
+  private Integer partitions;
+  private Long accountsScanned;
+  private Long transactionsScanned;
+  private Integer highestIssuedOperationNumber;
+  private Map<LedgerFindingType, Long> findingCounts = new EnumMap<>(LedgerFindingType.class);
+  private List<LedgerFinding> samples = new ArrayList<>();
+  private String error;
+}
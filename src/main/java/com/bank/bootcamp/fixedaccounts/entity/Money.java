@@ -0,0 +1,115 @@
+package com.bank.bootcamp.fixedaccounts.entity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import com.bank.bootcamp.fixedaccounts.exception.BankValidationException;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * Immutable monetary amount held as a count of minor units (cents).
+ * <p>
+ * Arithmetic is exact long math; anything that has to round (rates, stored amounts with more than
+ * two decimals) rounds half-even. Amounts sent by clients are never rounded: more than two decimals
+ * or more than {@link #MAX_INPUT} is rejected. It is stored in Mongo as {@code Decimal128} and
+ * serialized to JSON as a plain decimal number, so existing clients keep sending and reading numbers.
+ */
+public final class Money implements Comparable<Money> {
+
+  public static final int SCALE = 2;
+  public static final Money ZERO = new Money(0L);
+  /** Largest absolute amount accepted from a client; sums of many of them still fit a long. */
+  public static final BigDecimal MAX_INPUT = new BigDecimal("999999999999.99");
+
+  private static final long BASIS_POINTS = 10_000L;
+
+  private final long minorUnits;
+
+  private Money(long minorUnits) {
+    this.minorUnits = minorUnits;
+  }
+
+  public static Money ofMinor(long minorUnits) {
+    return minorUnits == 0L ? ZERO : new Money(minorUnits);
+  }
+
+  public static Money of(long units) {
+    return ofMinor(Math.multiplyExact(units, 100L));
+  }
+
+  public static Money of(BigDecimal amount) {
+    return ofMinor(amount.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact());
+  }
+
+  /** Amount sent by a client, which must already be exact to the cent. */
+  @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+  public static Money parse(BigDecimal amount) throws BankValidationException {
+    if (amount.stripTrailingZeros().scale() > SCALE)
+      throw new BankValidationException("Amount cannot have more than " + SCALE + " decimals");
+    if (amount.abs().compareTo(MAX_INPUT) > 0)
+      throw new BankValidationException("Amount cannot exceed " + MAX_INPUT);
+    return of(amount);
+  }
+
+  public long minorUnits() {
+    return minorUnits;
+  }
+
+  public Money plus(Money other) {
+    return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+  }
+
+  public Money minus(Money other) {
+    return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+  }
+
+  public Money negate() {
+    return ofMinor(Math.negateExact(minorUnits));
+  }
+
+  public Money abs() {
+    return minorUnits < 0 ? negate() : this;
+  }
+
+  /** Share of this amount expressed in basis points (50 = 0.5 %), rounded half-even. */
+  public Money basisPoints(long basisPoints) {
+    return ofMinor(divideHalfEven(Math.multiplyExact(minorUnits, basisPoints), BASIS_POINTS));
+  }
+
+  public boolean isNegative() {
+    return minorUnits < 0;
+  }
+
+  @JsonValue
+  public BigDecimal toBigDecimal() {
+    return BigDecimal.valueOf(minorUnits, SCALE);
+  }
+
+  @Override
+  public int compareTo(Money other) {
+    return Long.compare(minorUnits, other.minorUnits);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return this == other || other instanceof Money && ((Money) other).minorUnits == minorUnits;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(minorUnits);
+  }
+
+  @Override
+  public String toString() {
+    return toBigDecimal().toPlainString();
+  }
+
+  private static long divideHalfEven(long dividend, long divisor) {
+    var quotient = Math.floorDiv(dividend, divisor);
+    var twiceRemainder = 2 * Math.floorMod(dividend, divisor);
+    if (twiceRemainder > divisor || twiceRemainder == divisor && (quotient & 1) != 0)
+      quotient++;
+    return quotient;
+  }
+}
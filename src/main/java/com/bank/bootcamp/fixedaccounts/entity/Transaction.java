@@ -3,9 +3,13 @@ package com.bank.bootcamp.fixedaccounts.entity;
 import java.time.LocalDateTime;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Sharded;
+import org.springframework.data.mongodb.core.mapping.ShardingStrategy;
+import com.bank.bootcamp.fixedaccounts.dto.AccountType;
 import lombok.Data;
 
 @Document("Transactions")
+@Sharded(shardKey = { "accountId" }, shardingStrategy = ShardingStrategy.HASH, immutableKey = true)
 @Data
 public class Transaction {
 
@@ -13,9 +17,19 @@ public class Transaction {
   private String id;
   private Integer operationNumber;
   private LocalDateTime registerDate;
+  /** Last write of the document: when it was registered, or when a sent transfer was confirmed. */
+  private LocalDateTime lastModified;
   private String accountId;
   private String agent;
   private String description;
-  private Double amount;
+  private Money amount;
+  /** Operation number of the movement that charged this comission. */
+  private Integer parentOperationNumber;
+  /** Target of a sent transfer; the operation number is set once the remote leg is registered. */
+  private String transferTargetAccountId;
+  private AccountType transferTargetAccountType;
+  private Integer transferTargetOperationNumber;
+  /** Key of the request that registered it, when the caller may have sent it more than once. */
+  private String idempotencyKey;
   
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.bank.bootcamp.fixedaccounts.entity;
+
+import java.time.LocalDateTime;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+/**
+ * Sent transfer that was removed from the ledger because the target product rejected the credit.
+ * The ID is the removed transaction's; the ledger scan reads these so the operation number is not
+ * reported as missing.
+ */
+@Document("TransferRollbacks")
+@Data
+public class TransferRollback {
+
+  @Id
+  private String id;
+  private String accountId;
+  private Integer operationNumber;
+  private Money amount;
+  private String transferTargetAccountId;
+  private LocalDateTime rolledBackAt;
+  private String reason;
+}
@@ -0,0 +1,32 @@
+package com.bank.bootcamp.fixedaccounts.mapper;
+
+import com.bank.bootcamp.fixedaccounts.dto.BalanceDTO;
+import com.bank.bootcamp.fixedaccounts.dto.CreateAccountDTO;
+import com.bank.bootcamp.fixedaccounts.entity.Account;
+import com.bank.bootcamp.fixedaccounts.entity.Money;
+
+/** Plain field copies between account DTOs and the {@link Account} entity, without reflection. */
+public final class AccountMapper {
+
+  private AccountMapper() {
+  }
+
+  /** The opening amount becomes the opening transaction, it is not part of the account. */
+  public static Account toAccount(CreateAccountDTO dto) {
+    var account = new Account();
+    account.setCustomerId(dto.getCustomerId());
+    account.setAssignedDayNumberForMovement(dto.getAssignedDayNumberForMovement());
+    return account;
+  }
+
+  public static BalanceDTO toBalanceDTO(Account account, Money balance, Long monthlyMovements) {
+    var balanceDTO = new BalanceDTO();
+    balanceDTO.setAccountId(account.getId());
+    balanceDTO.setMonthlyMovementLimit(account.getMonthlyMovementLimit());
+    balanceDTO.setMonthlyMovementsAvailable(account.getMonthlyMovementLimit() - monthlyMovements);
+    //balanceDTO.setAccountNumber(account.getAccountNumber());
+    balanceDTO.setType("Fixed Account");
+    balanceDTO.setAmount(balance);
+    return balanceDTO;
+  }
+}
@@ -0,0 +1,25 @@
+package com.bank.bootcamp.fixedaccounts.mapper;
+
+import com.bank.bootcamp.fixedaccounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.fixedaccounts.entity.Transaction;
+
+/** Plain field copies from transaction requests to the {@link Transaction} entity, without reflection. */
+public final class TransactionMapper {
+
+  private TransactionMapper() {
+  }
+
+  /**
+   * Operation number and register date are assigned by the service; links (comission parent,
+   * transfer target) are internal and never taken from a request.
+   */
+  public static Transaction toTransaction(CreateTransactionDTO dto) {
+    var transaction = new Transaction();
+    transaction.setAccountId(dto.getAccountId());
+    transaction.setAgent(dto.getAgent());
+    transaction.setDescription(dto.getDescription());
+    transaction.setAmount(dto.getAmount());
+    transaction.setIdempotencyKey(dto.getIdempotencyKey());
+    return transaction;
+  }
+}
@@ -0,0 +1,8 @@
+package com.bank.bootcamp.fixedaccounts.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import com.bank.bootcamp.fixedaccounts.entity.LedgerScanReport;
+
+public interface LedgerScanReportRepository extends ReactiveMongoRepository<LedgerScanReport, String> {
+
+}
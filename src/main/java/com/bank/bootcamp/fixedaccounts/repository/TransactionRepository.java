@@ -2,8 +2,13 @@ package com.bank.bootcamp.fixedaccounts.repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
+import org.bson.types.Decimal128;
 import org.springframework.data.mongodb.repository.Aggregation;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import com.bank.bootcamp.fixedaccounts.dto.AccountTotalDTO;
+import com.bank.bootcamp.fixedaccounts.dto.LedgerVersionDTO;
 import com.bank.bootcamp.fixedaccounts.entity.Transaction;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -13,15 +18,49 @@ public interface TransactionRepository extends ReactiveMongoRepository<Transacti
   Flux<Transaction> findByAccountId(String accountId);
   Flux<Transaction> findByAccountIdAndRegisterDateBetween(String accountId, LocalDateTime from, LocalDateTime to);
   
+  /** In the order of the { accountId, registerDate, operationNumber } index, so documents stream without an in-memory sort. */
+  @Query(value = "{ accountId: ?0, registerDate: { $gte: ?1, $lt: ?2 } }", sort = "{ registerDate: 1, operationNumber: 1 }")
+  Flux<Transaction> streamByAccountIdAndPeriod(String accountId, LocalDateTime from, LocalDateTime to);
+  
   @Aggregation(pipeline = {
       "{ $match: { accountId: ?0 }}",
-      "{ $group: { _id: '', total: {$sum: $amount }}}"
+      "{ $group: { _id: '', total: {$sum: { $toDecimal: '$amount' } }}}"
   })
-  public Mono<Double> getBalanceByAccountId(String accountId);
+  public Mono<Decimal128> getBalanceByAccountId(String accountId);
   
   @Aggregation(pipeline = {
       "{ $match: { accountId: ?0, registerDate : { $lt: ?1 } }}",
-      "{ $group: { _id: '', total: {$sum: $amount }}}"
+      "{ $group: { _id: '', total: {$sum: { $toDecimal: '$amount' } }}}"
+  })
+  public Mono<Decimal128> getBalanceByAccountIdToDate(String accountId, LocalDate toDate);
+  
+  /** Balance and movements in the given window for several accounts in one pass; mongos only asks the shards owning those accounts. */
+  @Aggregation(pipeline = {
+      "{ $match: { accountId: { $in: ?0 } }}",
+      "{ $group: { _id: '$accountId', total: { $sum: { $toDecimal: '$amount' } }, monthlyMovements: { $sum: { $cond: [ { $and: [ { $gte: ['$registerDate', ?1] }, { $lte: ['$registerDate', ?2] } ] }, 1, 0 ] } } }}"
+  })
+  public Flux<AccountTotalDTO> getBalancesByAccountIds(List<String> accountIds, LocalDateTime from, LocalDateTime to);
+  
+  Mono<Long> deleteByIdAndAccountId(String id, String accountId);
+  
+  Mono<Transaction> findByAccountIdAndIdempotencyKey(String accountId, String idempotencyKey);
+  
+  /** Sent transfers whose credit was never confirmed, through the partial { registerDate } index of sent transfers. */
+  @Query("{ transferTargetAccountType: { $exists: true }, transferTargetOperationNumber: null, registerDate: { $gte: ?0, $lt: ?1 } }")
+  Flux<Transaction> findUnconfirmedTransfers(LocalDateTime from, LocalDateTime to);
+  
+  // Version lookups for conditional GETs, answered from the { accountId, operationNumber } and { accountId, lastModified } indexes
+  Mono<Long> countByAccountId(String accountId);
+  
+  @Query(fields = "{ operationNumber: 1, _id: 0 }")
+  Mono<Transaction> findFirstByAccountIdOrderByOperationNumberDesc(String accountId);
+  
+  @Query(fields = "{ lastModified: 1, _id: 0 }")
+  Mono<Transaction> findFirstByAccountIdOrderByLastModifiedDesc(String accountId);
+  
+  @Aggregation(pipeline = {
+      "{ $match: { accountId: ?0, registerDate: { $gt: ?1, $lt: ?2 } }}",
+      "{ $group: { _id: '', movements: { $sum: 1 }, lastOperationNumber: { $max: '$operationNumber' }, lastModified: { $max: '$lastModified' } }}"
   })
-  public Mono<Double> getBalanceByAccountIdToDate(String accountId, LocalDate toDate);
+  public Mono<LedgerVersionDTO> getLedgerVersionByAccountIdAndPeriod(String accountId, LocalDateTime from, LocalDateTime to);
 }
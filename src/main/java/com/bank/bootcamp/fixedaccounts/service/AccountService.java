@@ -1,63 +1,92 @@
 package com.bank.bootcamp.fixedaccounts.service;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
-import org.modelmapper.ModelMapper;
+import java.util.stream.Collectors;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.ObjectUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import com.bank.bootcamp.fixedaccounts.dto.AccountTotalDTO;
 import com.bank.bootcamp.fixedaccounts.dto.AverageDTO;
 import com.bank.bootcamp.fixedaccounts.dto.BalanceDTO;
 import com.bank.bootcamp.fixedaccounts.dto.CreateAccountDTO;
 import com.bank.bootcamp.fixedaccounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.fixedaccounts.dto.TransactionBatchResultDTO;
 import com.bank.bootcamp.fixedaccounts.dto.TransferDTO;
 import com.bank.bootcamp.fixedaccounts.dto.TransferOperation;
 import com.bank.bootcamp.fixedaccounts.entity.Account;
+import com.bank.bootcamp.fixedaccounts.entity.Money;
 import com.bank.bootcamp.fixedaccounts.entity.Transaction;
 import com.bank.bootcamp.fixedaccounts.entity.TransactionSequences;
+import com.bank.bootcamp.fixedaccounts.entity.TransferRollback;
 import com.bank.bootcamp.fixedaccounts.exception.BankValidationException;
+import com.bank.bootcamp.fixedaccounts.mapper.AccountMapper;
+import com.bank.bootcamp.fixedaccounts.mapper.TransactionMapper;
 import com.bank.bootcamp.fixedaccounts.repository.AccountRepository;
 import com.bank.bootcamp.fixedaccounts.repository.TransactionRepository;
+import com.bank.bootcamp.fixedaccounts.repository.TransferRollbackRepository;
 import com.bank.bootcamp.fixedaccounts.webclient.AccountWebClient;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class AccountService {
   
+  public static final String COMISSION_DESCRIPTION = "Maintenance comission by limit transactions";
+  public static final String TRANSFER_SENT_DESCRIPTION = "Transfer sent";
+  
   private final AccountRepository accountRepository;
   private final TransactionRepository transactionRepository;
   private final NextSequenceService nextSequenceService;
   private final Environment env;
   private final AccountWebClient accountWebClient;
+  private final CustomerExistenceFilter customerExistenceFilter;
+  private final TransferRollbackRepository transferRollbackRepository;
   
-  private ModelMapper mapper = new ModelMapper();
+  private final RequestCoalescer<String, BalanceDTO> versionedBalanceReads = new RequestCoalescer<>("balance.byAccountVersion");
+  private final RequestCoalescer<String, List<BalanceDTO>> customerBalanceReads = new RequestCoalescer<>("balance.byCustomer");
 
   public Mono<Account> createAccount(CreateAccountDTO dto) {
-    var minimumOpeningAmount = Double.parseDouble(Optional.ofNullable(env.getProperty("account.minimum-opening-amount")).orElse("0"));
+    var minimumOpeningAmount = Money.of(new BigDecimal(Optional.ofNullable(env.getProperty("account.minimum-opening-amount")).orElse("0")));
     return Mono.just(dto)
         .then(check(dto, acc -> Optional.of(acc).isEmpty(), "Account has not data"))
         .then(check(dto, acc -> ObjectUtils.isEmpty(acc.getCustomerId()), "Customer ID is required"))
         .then(check(dto, acc -> ObjectUtils.isEmpty(acc.getAssignedDayNumberForMovement()), "Assigned day number for movement is required"))
         .then(check(dto, acc -> acc.getAssignedDayNumberForMovement() < 1 && acc.getAssignedDayNumberForMovement() > 28, "Assigned day number for movement must be between 1 and 28"))
         .then(check(dto, acc -> ObjectUtils.isEmpty(acc.getOpeningAmount()), "Opening amount is required"))
-        .then(check(dto, acc -> acc.getOpeningAmount() < minimumOpeningAmount, String.format("The minimum opening amount is %s", minimumOpeningAmount)))
-        .then(accountRepository.findByCustomerId(dto.getCustomerId())
-            .<CreateAccountDTO>handle((record, sink) -> sink.error(new BankValidationException("Customer already has an saving account")))
+        .then(check(dto, acc -> acc.getOpeningAmount().compareTo(minimumOpeningAmount) < 0, String.format("The minimum opening amount is %s", minimumOpeningAmount)))
+        .then(customerExistenceFilter.mightContain(dto.getCustomerId())
+            ? accountRepository.findByCustomerId(dto.getCustomerId())
+                .<CreateAccountDTO>handle((record, sink) -> sink.error(new BankValidationException("Customer already has an saving account")))
+            : Mono.<CreateAccountDTO>empty() // el filtro descarta al cliente, no hace falta consultar Mongo
         )
         .switchIfEmpty(Mono.just(dto))
         .flatMap(accountDTO -> {
-          var account = mapper.map(accountDTO, Account.class);
+          var account = AccountMapper.toAccount(accountDTO);
           account.setMonthlyMovementLimit(1); // maximo movimientos mensuales
           return accountRepository.save(account)
+              .doOnError(DuplicateKeyException.class, e -> customerExistenceFilter.put(accountDTO.getCustomerId()))
+              .onErrorMap(DuplicateKeyException.class, e -> new BankValidationException("Customer already has an saving account", e))
+              .doOnNext(savedAccount -> customerExistenceFilter.put(savedAccount.getCustomerId()))
               .flatMap(savedAccount -> {
-                return nextSequenceService.getNextSequence(TransactionSequences.class.getSimpleName())
+                return nextSequenceService.getNextSequence(TransactionSequences.class.getSimpleName(), savedAccount.getId())
                     .map(nextSeq -> {
                       var openingTransaction = new Transaction();
                       openingTransaction.setAccountId(savedAccount.getId());
@@ -66,6 +95,7 @@ public class AccountService {
                       openingTransaction.setDescription("Opening account");
                       openingTransaction.setOperationNumber(nextSeq);
                       openingTransaction.setRegisterDate(LocalDateTime.now());
+                      openingTransaction.setLastModified(openingTransaction.getRegisterDate());
                       return openingTransaction;
                     })
                     .flatMap(tx -> {
@@ -86,16 +116,58 @@ public class AccountService {
     });
   }
   
-  private Mono<Transaction> persistTransaction(CreateTransactionDTO createTransactionDTO) {
-    return nextSequenceService.getNextSequence(TransactionSequences.class.getSimpleName()).<Transaction>flatMap(nextSeq -> {
-      var transaction = mapper.map(createTransactionDTO, Transaction.class);
+  /** The links consumer fills the internal references (comission parent, transfer target) that clients can not send. */
+  private Mono<Transaction> persistTransaction(CreateTransactionDTO createTransactionDTO, Consumer<Transaction> links) {
+    return nextSequenceService.getNextSequence(TransactionSequences.class.getSimpleName(), createTransactionDTO.getAccountId()).<Transaction>flatMap(nextSeq -> {
+      var transaction = TransactionMapper.toTransaction(createTransactionDTO);
+      links.accept(transaction);
       transaction.setOperationNumber(nextSeq);
       transaction.setRegisterDate(LocalDateTime.now());
+      transaction.setLastModified(transaction.getRegisterDate());
       return transactionRepository.save(transaction);
     });
   }
 
   public Mono<Transaction> createTransaction(CreateTransactionDTO createTransactionDTO) {
+    return createTransaction(createTransactionDTO, tx -> {});
+  }
+
+  /**
+   * Registers a batch sent by another product service, one after another and in order, so each
+   * transaction sees the balance and movement count left by the previous one. A rejected
+   * transaction does not stop the rest; any other failure fails the batch, since the sender can
+   * not tell whether that transaction was stored and sends the batch again with the same keys.
+   */
+  public Flux<TransactionBatchResultDTO> createTransactions(List<CreateTransactionDTO> createTransactionDTOs) {
+    return Flux.fromIterable(Optional.ofNullable(createTransactionDTOs).orElse(List.of()))
+        .concatMap(dto -> createTransaction(dto)
+            .map(tx -> {
+              var result = new TransactionBatchResultDTO();
+              result.setOperationNumber(tx.getOperationNumber());
+              return result;
+            })
+            .onErrorResume(BankValidationException.class, e -> {
+              var result = new TransactionBatchResultDTO();
+              result.setError(Optional.ofNullable(e.getMessage()).orElse(e.getClass().getSimpleName()));
+              return Mono.just(result);
+            }));
+  }
+
+  /**
+   * A request whose idempotency key is already registered on the account returns the stored
+   * transaction, before the day and movement limit checks that the first request may have used up.
+   */
+  private Mono<Transaction> createTransaction(CreateTransactionDTO createTransactionDTO, Consumer<Transaction> links) {
+    if (createTransactionDTO == null || ObjectUtils.isEmpty(createTransactionDTO.getIdempotencyKey()))
+      return registerTransaction(createTransactionDTO, links);
+    var registered = transactionRepository.findByAccountIdAndIdempotencyKey(createTransactionDTO.getAccountId(), createTransactionDTO.getIdempotencyKey());
+    return registered
+        .switchIfEmpty(Mono.defer(() -> registerTransaction(createTransactionDTO, links)))
+        // Dos envios simultaneos con la misma clave: el indice unico deja pasar uno solo
+        .onErrorResume(DuplicateKeyException.class, e -> registered);
+  }
+
+  private Mono<Transaction> registerTransaction(CreateTransactionDTO createTransactionDTO, Consumer<Transaction> links) {
     
     var maxTransactionsWithFreeComission = Integer.parseInt(Optional.ofNullable(env.getProperty("account.comission-free-maximum-transactions")).orElse("99"));
     
@@ -129,15 +201,16 @@ public class AccountService {
             })
         )
         .flatMap(acc -> {
-          return transactionRepository.getBalanceByAccountId(createTransactionDTO.getAccountId()).switchIfEmpty(Mono.just(0d));
+          return transactionRepository.getBalanceByAccountId(createTransactionDTO.getAccountId()).map(total -> Money.of(total.bigDecimalValue())).switchIfEmpty(Mono.just(Money.ZERO));
         })
         .flatMap(balance -> {
-          if (balance + createTransactionDTO.getAmount() < 0) {
+          if (balance.plus(createTransactionDTO.getAmount()).isNegative()) {
             return Mono.error(new BankValidationException("Insuficient balance"));
           } else {
             // Agregamos la validación de la comisión, y si esta puede aplicarse
-            var comissionPercentage = 0.005; // TODO: Este valor está en duro, no especificaron el monto, por ahora es 0.5 %
-            var newAmountWithComissionApply = (Math.abs(createTransactionDTO.getAmount()) * (1d + comissionPercentage)) * -1d;
+            var comissionBasisPoints = 50L; // TODO: Este valor está en duro, no especificaron el monto, por ahora es 0.5 %
+            var absoluteAmount = createTransactionDTO.getAmount().abs();
+            var newAmountWithComissionApply = absoluteAmount.plus(absoluteAmount.basisPoints(comissionBasisPoints)).negate();
             
             var yearMonth = YearMonth.from(LocalDateTime.now());
             var currentMonthStart = yearMonth.atDay(1).atStartOfDay();
@@ -147,7 +220,7 @@ public class AccountService {
                 .count()
                 .<Boolean>handle((transactionCount, sink) -> {                  
                   if (transactionCount >= maxTransactionsWithFreeComission) {
-                    if (balance + newAmountWithComissionApply < 0) {
+                    if (balance.plus(newAmountWithComissionApply).isNegative()) {
                       sink.error(new BankValidationException("Insuficient balance, can not apply the comission"));
                     } else {
                       sink.next(Boolean.TRUE);
@@ -157,7 +230,7 @@ public class AccountService {
                   }
                 })
                 .flatMap(persistComission -> {
-                  return persistTransaction(createTransactionDTO)
+                  return persistTransaction(createTransactionDTO, links)
                       .flatMap(tx -> {
                         var monoTx = Mono.just(tx);
                         if (persistComission) {
@@ -166,8 +239,8 @@ public class AccountService {
                           comissionTxDTO.setAgent("-");
                           comissionTxDTO.setAmount(newAmountWithComissionApply);
                           comissionTxDTO.setCreateByComission(Boolean.TRUE);
-                          comissionTxDTO.setDescription("Maintenance comission by limit transactions");
-                          monoTx = persistTransaction(comissionTxDTO).map(ct -> tx);
+                          comissionTxDTO.setDescription(COMISSION_DESCRIPTION);
+                          monoTx = persistTransaction(comissionTxDTO, ct -> ct.setParentOperationNumber(tx.getOperationNumber())).map(ct -> tx);
                         }
                         return monoTx;
                       })
@@ -177,13 +250,23 @@ public class AccountService {
         });
   }
 
+  /**
+   * Body for a response tagged with {@code version} (see {@link #getBalanceVersion}). Reads of the
+   * same version share one load, which starts after the version was read, so the body is never
+   * older than its ETag even when the write happened on another instance; with
+   * {@code balance.read-cache-ms} above zero the result is also reused for that long.
+   */
+  public Mono<BalanceDTO> getBalanceByAccountIdAndVersion(String accountId, String version) {
+    return versionedBalanceReads.execute(accountId + "@" + version, readCacheTtl(), () -> getBalanceByAccountId(accountId));
+  }
+
   public Mono<BalanceDTO> getBalanceByAccountId(String accountId) {
     return Mono.just(accountId)
     .switchIfEmpty(Mono.error(new BankValidationException("Account Id is required")))
     .flatMap(accId -> accountRepository.findById(accId))
     .switchIfEmpty(Mono.error(new BankValidationException("Account not found")))
     .flatMap(account -> {
-      var x = transactionRepository.getBalanceByAccountId(account.getId()).switchIfEmpty(Mono.just(0d))
+      var x = transactionRepository.getBalanceByAccountId(account.getId()).map(total -> Money.of(total.bigDecimalValue())).switchIfEmpty(Mono.just(Money.ZERO))
           .flatMap(balance -> {
             var yearMonth = YearMonth.from(LocalDateTime.now());
             var currentMonthStart = yearMonth.atDay(1).atStartOfDay();
@@ -191,27 +274,59 @@ public class AccountService {
             
             return transactionRepository.findByAccountIdAndRegisterDateBetween(accountId, currentMonthStart, currentMonthEnd)
                 .count().switchIfEmpty(Mono.just(0L))
-                .map(qty -> {
-                  var balanceDTO = new BalanceDTO();
-                  balanceDTO.setAccountId(account.getId());
-                  balanceDTO.setMonthlyMovementLimit(account.getMonthlyMovementLimit());
-                  balanceDTO.setMonthlyMovementsAvailable(account.getMonthlyMovementLimit() - qty);
-                  //balanceDTO.setAccountNumber(account.getAccountNumber());
-                  balanceDTO.setType("Fixed Account");
-                  balanceDTO.setAmount(balance);
-                  return balanceDTO;
-                });
+                .map(qty -> AccountMapper.toBalanceDTO(account, balance, qty));
           });
       return x;
     });
   }
 
+  /**
+   * Changes whenever the balance of the account can change: a movement is registered, updated in
+   * place or rolled back, or a new month resets the available movements.
+   */
+  public Mono<String> getBalanceVersion(String accountId) {
+    return Mono.zip(
+        transactionRepository.countByAccountId(accountId).defaultIfEmpty(0L),
+        transactionRepository.findFirstByAccountIdOrderByOperationNumberDesc(accountId).map(Transaction::getOperationNumber).defaultIfEmpty(0),
+        transactionRepository.findFirstByAccountIdOrderByLastModifiedDesc(accountId).map(tx -> epochMillis(tx.getLastModified())).defaultIfEmpty(0L))
+        .map(version -> String.format("%s-%s-%s-%s", YearMonth.now(), version.getT1(), version.getT2(), version.getT3()));
+  }
+
+  /** Transactions registered before lastModified existed count as 0. */
+  private static long epochMillis(LocalDateTime time) {
+    return time == null ? 0L : time.toInstant(ZoneOffset.UTC).toEpochMilli();
+  }
+
+  /** Coalesced like {@link #getBalanceByAccountIdAndVersion}, but keyed by customer only: the micro-cache is not invalidated by writes, it only expires. */
   public Flux<BalanceDTO> getBalancesByCustomerId(String customerId) {
+    return customerBalanceReads.execute(customerId, readCacheTtl(), () -> loadBalancesByCustomerId(customerId).collectList())
+        .flatMapIterable(balances -> balances);
+  }
+
+  private Duration readCacheTtl() {
+    return Duration.ofMillis(Long.parseLong(Optional.ofNullable(env.getProperty("balance.read-cache-ms")).orElse("0")));
+  }
+
+  private Flux<BalanceDTO> loadBalancesByCustomerId(String customerId) {
     return Mono.just(customerId)
     .switchIfEmpty(Mono.error(new BankValidationException("Customer ID is required")))
-    .flatMap(custId -> accountRepository.findByCustomerId(custId)
-        .flatMap(account -> getBalanceByAccountId(account.getId())))
-    .flux();
+    .flatMapMany(custId -> accountRepository.findByCustomerId(custId))
+    .collectMap(Account::getId)
+    .flatMapMany(accounts -> {
+      if (accounts.isEmpty())
+        return Flux.empty();
+      // Una sola agregacion para todas las cuentas del cliente, mongos la envia solo a los shards que las contienen
+      var yearMonth = YearMonth.from(LocalDateTime.now());
+      var currentMonthStart = yearMonth.atDay(1).atStartOfDay();
+      var currentMonthEnd = yearMonth.atEndOfMonth().atTime(23, 59, 59);
+      return transactionRepository.getBalancesByAccountIds(new ArrayList<>(accounts.keySet()), currentMonthStart, currentMonthEnd)
+          .collectMap(AccountTotalDTO::getAccountId)
+          .flatMapIterable(totals -> accounts.values().stream()
+              .map(account -> Optional.ofNullable(totals.get(account.getId()))
+                  .map(total -> AccountMapper.toBalanceDTO(account, total.getTotal(), total.getMonthlyMovements()))
+                  .orElseGet(() -> AccountMapper.toBalanceDTO(account, Money.ZERO, 0L)))
+              .collect(Collectors.toList()));
+    });
   }
 
   public Flux<Account> getAccountsByCustomer(String customerId) {
@@ -223,6 +338,25 @@ public class AccountService {
         .flux();
   }
 
+  /**
+   * A month is sealed once it is over and the reconciler can no longer confirm or roll back its
+   * transfers ({@code transfer.reconcile.max-age-hours} after its end); movements are always
+   * registered with the current date.
+   */
+  public boolean isSealedPeriod(LocalDate period) {
+    var reconcileWindow = Duration.ofHours(Long.parseLong(Optional.ofNullable(env.getProperty("transfer.reconcile.max-age-hours")).orElse("24")));
+    return YearMonth.from(period).isBefore(YearMonth.from(LocalDateTime.now().minus(reconcileWindow)));
+  }
+
+  /** Version of the movements of one month; a sealed month keeps its version forever. */
+  public Mono<String> getMovementsVersion(String accountId, LocalDate period) {
+    var yearMonth = YearMonth.from(period);
+    var sealState = isSealedPeriod(period) ? "sealed" : "open";
+    return transactionRepository.getLedgerVersionByAccountIdAndPeriod(accountId, yearMonth.atDay(1).atStartOfDay(), yearMonth.atEndOfMonth().atTime(23, 59, 59))
+        .map(version -> String.format("%s-%s-%s-%s-%s", yearMonth, sealState, version.getMovements(), version.getLastOperationNumber(), epochMillis(version.getLastModified())))
+        .defaultIfEmpty(String.format("%s-%s-0-0-0", yearMonth, sealState));
+  }
+
   public Flux<Transaction> getTransactionsByAccountIdAndPeriod(String accountId, LocalDate period) {
     return Flux.just(accountId)
         .switchIfEmpty(Flux.error(new BankValidationException("Account Id is required")))
@@ -245,7 +379,7 @@ public class AccountService {
         .switchIfEmpty(Mono.error(new BankValidationException("Transfer has not data")))
         .then(check(transferDTO, dto -> ObjectUtils.isEmpty(dto), "Transfer has not data"))
         .then(check(transferDTO, dto -> ObjectUtils.isEmpty(dto.getAmount()), "Transfer amount is required"))
-        .then(check(transferDTO, dto -> dto.getAmount() < 0, "Transfer amount must be greater than zero"))
+        .then(check(transferDTO, dto -> dto.getAmount().isNegative(), "Transfer amount must be greater than zero"))
         .then(check(transferDTO, dto -> ObjectUtils.isEmpty(dto.getSourceAccountId()), "Transfer source account ID is required"))
         .then(check(transferDTO, dto -> ObjectUtils.isEmpty(dto.getTargetAccountType()), "Transfer account type is required"))
         .then(check(transferDTO, dto -> ObjectUtils.isEmpty(dto.getTargetAccountId()), "Transfer account ID is required"))
@@ -254,32 +388,106 @@ public class AccountService {
           var transactionDTO = new CreateTransactionDTO();
           transactionDTO.setAccountId(transferDTO.getSourceAccountId());
           transactionDTO.setAgent("-");
-          transactionDTO.setDescription("Transfer sent");
-          transactionDTO.setAmount(transferDTO.getAmount() * -1);
-          
-          return createTransaction(transactionDTO)
-              .map(tx -> {
-                transferOperation.setSourceTransactionId(tx.getId());
-                return tx.getOperationNumber();
-              });
-        })
-        .flatMap(operationNumberTarget -> {
-          
-          var transactionDTO = new CreateTransactionDTO();
-          transactionDTO.setAccountId(transferDTO.getTargetAccountId());
-          transactionDTO.setAgent("-");
-          transactionDTO.setDescription("Transfer incoming " + operationNumberTarget);
-          transactionDTO.setAmount(transferDTO.getAmount());
+          transactionDTO.setDescription(TRANSFER_SENT_DESCRIPTION);
+          transactionDTO.setAmount(transferDTO.getAmount().negate());
           
-          return accountWebClient.createTransaction(transferDTO.getTargetAccountType(), transactionDTO)
-              .onErrorResume(Exception.class, e -> {
-                transactionRepository.deleteById(transferOperation.getSourceTransactionId());
-                return Mono.error(new BankValidationException("The operation could not be completed"));
-              });
+          return createTransaction(transactionDTO, tx -> {
+                tx.setTransferTargetAccountId(transferDTO.getTargetAccountId());
+                tx.setTransferTargetAccountType(transferDTO.getTargetAccountType());
+              })
+              .doOnNext(tx -> transferOperation.setSourceTransactionId(tx.getId()));
         })
+        .flatMap(sourceTransaction -> sendTransferCredit(sourceTransaction)
+            .onErrorResume(e -> {
+              if (isTransferRejection(e))
+                return rollBackTransfer(sourceTransaction, e)
+                    .then(Mono.error(new BankValidationException("The operation could not be completed")));
+              // No se sabe si el destino registro el abono: el cargo se mantiene y el conciliador lo reenvia con la misma clave
+              log.warn("Transfer {} of account {} pending confirmation", sourceTransaction.getOperationNumber(), sourceTransaction.getAccountId(), e);
+              return Mono.error(new BankValidationException("The transfer is pending confirmation"));
+            })
+            .flatMap(targetOperationNumber -> confirmTransfer(sourceTransaction, targetOperationNumber)))
         ;
   }
 
+  /**
+   * Sends again the credits of transfers registered between {@code from} and {@code to} that were
+   * never confirmed. The target answers with the credit it already holds for the same key, so a
+   * credit that did arrive is only confirmed; a rejection rolls the transfer back and any other
+   * failure leaves it pending for the next run. Returns how many transfers were resolved.
+   */
+  public Mono<Long> reconcileTransfers(LocalDateTime from, LocalDateTime to) {
+    return transactionRepository.findUnconfirmedTransfers(from, to)
+        .concatMap(sourceTransaction -> sendTransferCredit(sourceTransaction)
+            .flatMap(targetOperationNumber -> confirmTransfer(sourceTransaction, targetOperationNumber))
+            .thenReturn(Boolean.TRUE)
+            .onErrorResume(e -> isTransferRejection(e)
+                ? rollBackTransfer(sourceTransaction, e).thenReturn(Boolean.TRUE)
+                : Mono.just(Boolean.FALSE)))
+        .filter(Boolean::booleanValue)
+        .count();
+  }
+
+  /**
+   * Credit on the target account for a sent transfer. The idempotency key is the source account and
+   * operation number, so failures that may have reached the target are retried
+   * ({@code transfer.credit.retries}, backoff from {@code transfer.credit.retry-backoff-ms}) without
+   * registering the credit twice.
+   */
+  private Mono<Integer> sendTransferCredit(Transaction sourceTransaction) {
+    var transactionDTO = new CreateTransactionDTO();
+    transactionDTO.setAccountId(sourceTransaction.getTransferTargetAccountId());
+    transactionDTO.setAgent("-");
+    transactionDTO.setDescription("Transfer incoming " + sourceTransaction.getOperationNumber());
+    transactionDTO.setAmount(sourceTransaction.getAmount().negate());
+    transactionDTO.setIdempotencyKey(sourceTransaction.getAccountId() + ":" + sourceTransaction.getOperationNumber());
+    var targetType = sourceTransaction.getTransferTargetAccountType();
+    var retries = Long.parseLong(Optional.ofNullable(env.getProperty("transfer.credit.retries")).orElse("2"));
+    var backoff = Duration.ofMillis(Long.parseLong(Optional.ofNullable(env.getProperty("transfer.credit.retry-backoff-ms")).orElse("200")));
+    return Mono.defer(() -> accountWebClient.createTransaction(targetType, transactionDTO))
+        .switchIfEmpty(Mono.error(new IllegalStateException("No operation number from " + targetType)))
+        .retryWhen(Retry.backoff(retries, backoff)
+            .filter(e -> !isTransferRejection(e))
+            .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+  }
+
+  /**
+   * True only when the target answered that it did not register the credit: its own error in a
+   * batch, or a 4xx other than 408 and 429. Timeouts, an open circuit, connection errors and 5xx
+   * may come after the credit was stored.
+   */
+  static boolean isTransferRejection(Throwable e) {
+    if (e instanceof BankValidationException)
+      return true;
+    if (e instanceof WebClientResponseException) {
+      var status = ((WebClientResponseException) e).getRawStatusCode();
+      return status >= 400 && status < 500 && status != 408 && status != 429;
+    }
+    return false;
+  }
+
+  private Mono<Integer> confirmTransfer(Transaction sourceTransaction, Integer targetOperationNumber) {
+    // Si esto falla el conciliador reenvia el abono y el destino devuelve el mismo numero
+    sourceTransaction.setTransferTargetOperationNumber(targetOperationNumber);
+    sourceTransaction.setLastModified(LocalDateTime.now());
+    return transactionRepository.save(sourceTransaction).thenReturn(targetOperationNumber);
+  }
+
+  /** Removes the sent leg, leaving a record first so the ledger scan does not report its number as missing. */
+  private Mono<Void> rollBackTransfer(Transaction sourceTransaction, Throwable cause) {
+    var rollback = new TransferRollback();
+    rollback.setId(sourceTransaction.getId());
+    rollback.setAccountId(sourceTransaction.getAccountId());
+    rollback.setOperationNumber(sourceTransaction.getOperationNumber());
+    rollback.setAmount(sourceTransaction.getAmount());
+    rollback.setTransferTargetAccountId(sourceTransaction.getTransferTargetAccountId());
+    rollback.setRolledBackAt(LocalDateTime.now());
+    rollback.setReason(Optional.ofNullable(cause.getMessage()).orElse(cause.getClass().getSimpleName()));
+    return transferRollbackRepository.save(rollback)
+        .then(transactionRepository.deleteByIdAndAccountId(sourceTransaction.getId(), sourceTransaction.getAccountId()))
+        .then();
+  }
+
   public Flux<AverageDTO> getAverageDailyReportByAccount(String accountId) {
     // TODO Auto-generated method stub
     return null;
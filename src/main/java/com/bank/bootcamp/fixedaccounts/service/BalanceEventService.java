@@ -0,0 +1,204 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import java.time.Duration;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+import com.bank.bootcamp.fixedaccounts.dto.BalanceDTO;
+import com.bank.bootcamp.fixedaccounts.entity.Account;
+import com.bank.bootcamp.fixedaccounts.exception.BankValidationException;
+import com.bank.bootcamp.fixedaccounts.repository.AccountRepository;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.model.changestream.FullDocument;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Publishes a balance-changed event each time a transaction is written to or removed from the
+ * {@code Transactions} collection, read from a Mongo change stream.
+ * <p>
+ * Each instance opens a single change stream while it has subscribers and fans it out to all of
+ * them; if the stream fails it is reopened after the last resume token it delivered. When that
+ * token can no longer be resumed a new stream is opened and the history is dropped. The event ID is
+ * that resume token. The balance in an event is read when the event is sent, so a client that
+ * reconnects with {@code Last-Event-ID} only needs the current balance: it is sent right away when
+ * one of the last {@code balance.events.history-size} changes seen by the instance touched the
+ * account after that ID, or when the ID is not in that history.
+ * <p>
+ * A delete only carries the document key, which includes {@code accountId} once the collection is
+ * sharded on it; deletes without it cannot be traced to an account and are skipped.
+ */
+@Service
+@Slf4j
+public class BalanceEventService {
+
+  public static final String BALANCE_CHANGED_EVENT = "balance-changed";
+  /** InvalidResumeToken, ChangeStreamFatalError and ChangeStreamHistoryLost. */
+  private static final Set<Integer> NON_RESUMABLE_ERROR_CODES = Set.of(260, 280, 286);
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final AccountRepository accountRepository;
+  private final AccountService accountService;
+  private final Environment env;
+  private final int historySize;
+  private final Deque<BalanceChange> history = new ConcurrentLinkedDeque<>();
+  private final AtomicInteger historyCount = new AtomicInteger();
+  private final AtomicReference<String> lastResumeToken = new AtomicReference<>();
+  private final Flux<BalanceChange> changes;
+
+  public BalanceEventService(ReactiveMongoTemplate mongoTemplate, AccountRepository accountRepository, AccountService accountService, Environment env) {
+    this.mongoTemplate = mongoTemplate;
+    this.accountRepository = accountRepository;
+    this.accountService = accountService;
+    this.env = env;
+    this.historySize = Integer.parseInt(Optional.ofNullable(env.getProperty("balance.events.history-size")).orElse("1000"));
+    this.changes = Flux.defer(() -> {
+          // Cada vez que vuelve a haber suscriptores empieza un stream nuevo; solo se reanuda tras un error
+          var resumeAfter = new AtomicReference<String>();
+          return Flux.defer(() -> openChangeStream(resumeAfter.get()))
+              .map(this::toBalanceChange)
+              .doOnNext(change -> resumeAfter.set(change.getResumeToken()))
+              .doOnError(e -> {
+                if (!isResumable(e)) {
+                  // El token ya salio del oplog: reanudar fallaria siempre, se abre un stream nuevo.
+                  // Los cambios intermedios se pierden, asi que el historial deja de reconocer los IDs anteriores
+                  log.warn("Balance change stream cannot resume after {}, opening a new one", resumeAfter.get(), e);
+                  resumeAfter.set(null);
+                  forgetHistory();
+                } else
+                  log.warn("Balance change stream failed, reopening after {}", resumeAfter.get(), e);
+              })
+              .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)));
+        })
+        .filter(change -> change.getAccountId() != null)
+        .doOnNext(this::remember)
+        .publish()
+        .refCount();
+  }
+
+  public Flux<ServerSentEvent<BalanceDTO>> getBalanceEventsByAccountId(String accountId, String lastEventId) {
+    return Mono.justOrEmpty(accountId)
+        .switchIfEmpty(Mono.error(new BankValidationException("Account Id is required")))
+        .flatMap(accId -> accountRepository.findById(accId))
+        .switchIfEmpty(Mono.error(new BankValidationException("Account not found")))
+        .flatMapMany(account -> balanceEvents(account.getId(), lastEventId));
+  }
+
+  public Flux<ServerSentEvent<BalanceDTO>> getBalanceEventsByCustomerId(String customerId, String lastEventId) {
+    return Mono.justOrEmpty(customerId)
+        .switchIfEmpty(Mono.error(new BankValidationException("Customer ID is required")))
+        .flatMap(custId -> accountRepository.findByCustomerId(custId))
+        .switchIfEmpty(Mono.error(new BankValidationException("Account not found")))
+        .map(Account::getId)
+        .flatMapMany(accountId -> balanceEvents(accountId, lastEventId));
+  }
+
+  private Flux<ServerSentEvent<BalanceDTO>> balanceEvents(String accountId, String lastEventId) {
+    var heartbeat = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("balance.events.heartbeat-seconds")).orElse("15")));
+    // Primero se suscribe al stream compartido y luego se revisa el historial, asi no se pierde ningun cambio entre ambos
+    var events = Flux.merge(
+            changes.filter(change -> accountId.equals(change.getAccountId())).map(BalanceChange::getResumeToken),
+            Mono.justOrEmpty(lastEventId).flatMap(eventId -> Mono.justOrEmpty(missedChange(accountId, eventId))))
+        .concatMap(resumeToken -> accountService.getBalanceByAccountId(accountId)
+            .map(balance -> ServerSentEvent.builder(balance)
+                .id(resumeToken)
+                .event(BALANCE_CHANGED_EVENT)
+                .build()))
+        .share();
+    // Los comentarios periodicos mantienen viva la conexion a traves de proxies y del gateway
+    var keepAlive = Flux.interval(heartbeat).map(tick -> ServerSentEvent.<BalanceDTO>builder().comment("keep-alive").build());
+    return Flux.merge(events, keepAlive.takeUntilOther(events.then(Mono.just(Boolean.TRUE))));
+  }
+
+  /**
+   * Resume token to send with the current balance when the account changed after {@code lastEventId},
+   * or when that event is no longer in the history and the account may have changed.
+   */
+  private Optional<String> missedChange(String accountId, String lastEventId) {
+    var snapshot = List.copyOf(history);
+    var seen = false;
+    String missed = null;
+    for (var change : snapshot) {
+      if (seen && accountId.equals(change.getAccountId()))
+        missed = change.getResumeToken();
+      seen = seen || change.getResumeToken().equals(lastEventId);
+    }
+    if (!seen)
+      return Optional.of(Objects.requireNonNullElse(lastResumeToken.get(), lastEventId));
+    return Optional.ofNullable(missed);
+  }
+
+  private Flux<ChangeStreamEvent<Document>> openChangeStream(String resumeAfter) {
+    var options = ChangeStreamOptions.builder()
+        .filter(Aggregation.newAggregation(Aggregation.match(where("operationType").in("insert", "replace", "update", "delete"))))
+        .fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+    if (!ObjectUtils.isEmpty(resumeAfter))
+      options.resumeAfter(new BsonDocument("_data", new BsonString(resumeAfter)));
+    return mongoTemplate.changeStream("Transactions", options.build(), Document.class);
+  }
+
+  /**
+   * Whether the stream can be reopened after its last resume token; it cannot once that token has
+   * fallen off the oplog or the server reports the stream as not resumable.
+   */
+  static boolean isResumable(Throwable error) {
+    for (var cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof MongoServerException) {
+        var serverError = (MongoServerException) cause;
+        return !NON_RESUMABLE_ERROR_CODES.contains(serverError.getCode())
+            && !serverError.hasErrorLabel("NonResumableChangeStreamError");
+      }
+    }
+    return true;
+  }
+
+  private BalanceChange toBalanceChange(ChangeStreamEvent<Document> event) {
+    var resumeToken = event.getResumeToken().asDocument().getString("_data").getValue();
+    lastResumeToken.set(resumeToken);
+    var fullDocument = event.getRaw().getFullDocument();
+    if (fullDocument != null && fullDocument.get("accountId") != null)
+      return new BalanceChange(fullDocument.get("accountId").toString(), resumeToken);
+    // En los borrados solo llega la clave del documento, que incluye la clave de sharding
+    var documentKey = event.getRaw().getDocumentKey();
+    if (documentKey != null && documentKey.isString("accountId"))
+      return new BalanceChange(documentKey.getString("accountId").getValue(), resumeToken);
+    return new BalanceChange(null, resumeToken);
+  }
+
+  private void remember(BalanceChange change) {
+    history.addLast(change);
+    if (historyCount.incrementAndGet() > historySize && history.pollFirst() != null)
+      historyCount.decrementAndGet();
+  }
+
+  private void forgetHistory() {
+    while (history.pollFirst() != null)
+      historyCount.decrementAndGet();
+  }
+
+  @Value
+  private static class BalanceChange {
+    String accountId;
+    String resumeToken;
+  }
+}
@@ -0,0 +1,60 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+class CsvStatementWriter implements StatementWriter {
+
+  private static final int LINES_PER_CHUNK = 128;
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+  private final DataBufferFactory bufferFactory;
+
+  @Override
+  public int batchSize() {
+    return LINES_PER_CHUNK;
+  }
+
+  @Override
+  public DataBuffer begin() {
+    return bufferFactory.allocateBuffer(64).write("registerDate,operationNumber,description,agent,amount,balance\r\n", StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public DataBuffer write(List<StatementLine> lines) {
+    var buffer = bufferFactory.allocateBuffer(lines.size() * 128);
+    for (var line : lines) {
+      buffer.write(line.getRegisterDate() == null ? "" : DATE_FORMAT.format(line.getRegisterDate()), StandardCharsets.UTF_8);
+      buffer.write(",", StandardCharsets.UTF_8);
+      buffer.write(line.getOperationNumber() == null ? "" : line.getOperationNumber().toString(), StandardCharsets.UTF_8);
+      buffer.write(",", StandardCharsets.UTF_8);
+      buffer.write(escape(line.getDescription()), StandardCharsets.UTF_8);
+      buffer.write(",", StandardCharsets.UTF_8);
+      buffer.write(escape(line.getAgent()), StandardCharsets.UTF_8);
+      buffer.write(",", StandardCharsets.UTF_8);
+      buffer.write(line.getAmount() == null ? "" : line.getAmount().toString(), StandardCharsets.UTF_8);
+      buffer.write(",", StandardCharsets.UTF_8);
+      buffer.write(line.getBalance().toString(), StandardCharsets.UTF_8);
+      buffer.write("\r\n", StandardCharsets.UTF_8);
+    }
+    return buffer;
+  }
+
+  @Override
+  public DataBuffer finish() {
+    return bufferFactory.allocateBuffer(0);
+  }
+
+  private static String escape(String value) {
+    if (value == null)
+      return "";
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+      return value;
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+}
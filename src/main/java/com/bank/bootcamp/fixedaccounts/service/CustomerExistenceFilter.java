@@ -0,0 +1,214 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.time.Duration;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import com.bank.bootcamp.fixedaccounts.entity.Account;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Bloom filter over the customer IDs that already own an account.
+ * <p>
+ * A negative answer is definitive, so {@link AccountService#createAccount} can skip the
+ * {@code findByCustomerId} query. Until the filter is loaded every lookup answers "maybe",
+ * and the unique index on {@code Accounts.customerId} remains the final guard for customers
+ * created by other instances.
+ * <p>
+ * The filter is saved to {@code account.customer-filter.snapshot-path} on shutdown together with
+ * the highest account {@code _id} it had read from Mongo. The next start loads the snapshot and
+ * only reads the accounts created after that mark, going back
+ * {@code account.customer-filter.catch-up-margin-seconds} to cover inserts still in flight and
+ * clock skew between instances; ObjectIds order the same way for every instance, so any instance
+ * can reuse any snapshot. A snapshot built with another sizing is ignored and the filter is
+ * rebuilt from the whole collection.
+ */
+@Service
+@Slf4j
+public class CustomerExistenceFilter {
+
+  private static final int SNAPSHOT_MAGIC = 0x43424632;
+  private static final ObjectId NO_ACCOUNTS = new ObjectId(new byte[12]);
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final Path snapshotPath;
+  private final Duration catchUpMargin;
+  private final int numBits;
+  private final int numHashes;
+  private final AtomicLongArray bits;
+  /** Highest account ObjectId read from Mongo; every account up to it is in the filter. */
+  private final AtomicReference<ObjectId> highWaterMark = new AtomicReference<>(NO_ACCOUNTS);
+  private volatile boolean ready = false;
+
+  public CustomerExistenceFilter(ReactiveMongoTemplate mongoTemplate, Environment env) {
+    this.mongoTemplate = mongoTemplate;
+    var expectedCustomers = Long.parseLong(Optional.ofNullable(env.getProperty("account.customer-filter.expected-customers")).orElse("1000000"));
+    var falsePositiveRate = Double.parseDouble(Optional.ofNullable(env.getProperty("account.customer-filter.false-positive-rate")).orElse("0.01"));
+    this.snapshotPath = Paths.get(Optional.ofNullable(env.getProperty("account.customer-filter.snapshot-path"))
+        .orElse(Paths.get(System.getProperty("java.io.tmpdir"), "fixed-accounts-customers.bloom").toString()));
+    this.catchUpMargin = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("account.customer-filter.catch-up-margin-seconds")).orElse("300")));
+    var optimalBits = Math.ceil(-expectedCustomers * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    this.numBits = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 64));
+    this.numHashes = (int) Math.max(1, Math.round((double) numBits / expectedCustomers * Math.log(2)));
+    this.bits = new AtomicLongArray((numBits + 63) >>> 6);
+  }
+
+  public boolean mightContain(String customerId) {
+    if (!ready || customerId == null)
+      return true;
+    var h1 = hash(customerId);
+    var h2 = mix(h1 ^ 0x9e3779b97f4a7c15L);
+    for (int i = 0; i < numHashes; i++) {
+      var bit = (int) Long.remainderUnsigned(h1 + i * h2, numBits);
+      if ((bits.get(bit >>> 6) & (1L << bit)) == 0)
+        return false;
+    }
+    return true;
+  }
+
+  /** Idempotent: adding a customer that is already in the filter changes nothing. */
+  public void put(String customerId) {
+    if (customerId == null)
+      return;
+    setBits(customerId);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void load() {
+    initialize().subscribe(
+        loaded -> log.info("Customer existence filter ready ({} bits, {} hashes, up to account {})", numBits, numHashes, highWaterMark.get()),
+        e -> log.warn("Customer existence filter disabled, every account creation will query Mongo", e));
+  }
+
+  /** Loads the snapshot and catches up from its mark, or rebuilds the filter; the filter answers once this completes. */
+  public Mono<Boolean> initialize() {
+    return mongoTemplate.indexOps(Account.class)
+        .ensureIndex(new Index().on("customerId", Sort.Direction.ASC).unique())
+        .then(Mono.fromCallable(this::readSnapshot)
+            .subscribeOn(Schedulers.boundedElastic())
+            .onErrorResume(IOException.class, e -> {
+              log.warn("Ignoring unreadable customer existence filter snapshot {}", snapshotPath, e);
+              return Mono.empty();
+            }))
+        .map(this::catchUpQuery)
+        .switchIfEmpty(Mono.fromSupplier(() -> query(Criteria.where("customerId").exists(true))))
+        .flatMap(this::addAccounts)
+        .doOnNext(loaded -> ready = true);
+  }
+
+  @PreDestroy
+  public void saveSnapshot() {
+    if (!ready)
+      return;
+    try {
+      writeSnapshot();
+    } catch (IOException e) {
+      log.warn("Could not write customer existence filter snapshot to {}", snapshotPath, e);
+    }
+  }
+
+  /** Accounts created from a little before the mark on; the ObjectId bound skips the older string IDs. */
+  private Query catchUpQuery(ObjectId mark) {
+    var from = Math.max(0L, mark.getDate().getTime() - catchUpMargin.toMillis());
+    return query(Criteria.where("_id").gte(ObjectId.getSmallestWithDate(new Date(from))));
+  }
+
+  private Mono<Boolean> addAccounts(Query accounts) {
+    accounts.fields().include("customerId");
+    return mongoTemplate.find(accounts, Account.class)
+        .doOnNext(account -> {
+          setBits(account.getCustomerId());
+          if (ObjectId.isValid(account.getId())) {
+            var id = new ObjectId(account.getId());
+            highWaterMark.accumulateAndGet(id, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+          }
+        })
+        .then(Mono.fromCallable(() -> {
+          writeSnapshot();
+          return Boolean.TRUE;
+        }).subscribeOn(Schedulers.boundedElastic()));
+  }
+
+  /** Mark of the snapshot, empty when there is none or it was built with another sizing. */
+  private ObjectId readSnapshot() throws IOException {
+    if (!Files.isReadable(snapshotPath))
+      return null;
+    try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+      if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != numBits || in.readInt() != numHashes)
+        return null;
+      var mark = new byte[12];
+      in.readFully(mark);
+      for (int i = 0; i < bits.length(); i++)
+        bits.set(i, bits.get(i) | in.readLong());
+      highWaterMark.set(new ObjectId(mark));
+      return highWaterMark.get();
+    }
+  }
+
+  private void writeSnapshot() throws IOException {
+    var tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+    try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      out.writeInt(numBits);
+      out.writeInt(numHashes);
+      out.write(highWaterMark.get().toByteArray());
+      for (int i = 0; i < bits.length(); i++)
+        out.writeLong(bits.get(i));
+    }
+    Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private void setBits(String customerId) {
+    var h1 = hash(customerId);
+    var h2 = mix(h1 ^ 0x9e3779b97f4a7c15L);
+    for (int i = 0; i < numHashes; i++) {
+      var bit = (int) Long.remainderUnsigned(h1 + i * h2, numBits);
+      var word = bit >>> 6;
+      var mask = 1L << bit;
+      long current;
+      while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+    }
+  }
+
+  private static long hash(String value) {
+    var h = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      h ^= value.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return mix(h);
+  }
+
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -0,0 +1,85 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+import com.bank.bootcamp.fixedaccounts.dto.AccountType;
+import com.bank.bootcamp.fixedaccounts.dto.BalanceDTO;
+import com.bank.bootcamp.fixedaccounts.dto.CustomerPositionDTO;
+import com.bank.bootcamp.fixedaccounts.exception.BankValidationException;
+import com.bank.bootcamp.fixedaccounts.webclient.AccountWebClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ * Every balance of a customer across the product services in one call.
+ * <p>
+ * This service's own product ({@code account.local-type}, SAVING like the {@code savingAccounts}
+ * mapping) is read locally and never requested remotely; a 404 from one of the other products
+ * means the customer has none of them.
+ * <p>
+ * The other products are asked in parallel. A product that does not answer within
+ * {@code position.target-timeout-ms} is listed as unavailable instead of failing the whole
+ * position. When a product has not answered after {@code position.hedge-delay-ms} a second,
+ * identical request is sent and the first answer wins, which cuts the tail latency of a slow
+ * instance; 0 disables hedging.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CustomerPositionService {
+
+  private final AccountService accountService;
+  private final AccountWebClient accountWebClient;
+  private final Environment env;
+
+  public Mono<CustomerPositionDTO> getPositionByCustomerId(String customerId) {
+    if (ObjectUtils.isEmpty(customerId))
+      return Mono.error(new BankValidationException("Customer ID is required"));
+
+    var localType = AccountType.valueOf(Optional.ofNullable(env.getProperty("account.local-type")).orElse(AccountType.SAVING.name()));
+    var targetTimeout = Duration.ofMillis(Long.parseLong(Optional.ofNullable(env.getProperty("position.target-timeout-ms")).orElse("800")));
+    var hedgeDelay = Duration.ofMillis(Long.parseLong(Optional.ofNullable(env.getProperty("position.hedge-delay-ms")).orElse("200")));
+
+    var remote = Flux.fromArray(AccountType.values())
+        .filter(type -> type != localType)
+        .flatMap(type -> hedged(() -> accountWebClient.getBalancesByCustomer(type, customerId).collectList(), hedgeDelay)
+            .timeout(targetTimeout)
+            .map(balances -> Tuples.of(type, Optional.of(balances)))
+            .onErrorResume(e -> {
+              log.warn("Position of customer {} without {}: {}", customerId, type, e.toString());
+              return Mono.just(Tuples.of(type, Optional.<List<BalanceDTO>>empty()));
+            }))
+        .collectList();
+
+    return Mono.zip(accountService.getBalancesByCustomerId(customerId).collectList(), remote)
+        .map(results -> {
+          var position = new CustomerPositionDTO();
+          position.setCustomerId(customerId);
+          position.getBalances().addAll(results.getT1());
+          for (Tuple2<AccountType, Optional<List<BalanceDTO>>> product : results.getT2()) {
+            if (product.getT2().isPresent())
+              position.getBalances().addAll(product.getT2().get());
+            else
+              position.getUnavailableProducts().add(product.getT1());
+          }
+          position.setComplete(position.getUnavailableProducts().isEmpty());
+          return position;
+        });
+  }
+
+  /** Only for idempotent reads: the slow request is cancelled once the other one answers. */
+  private <T> Mono<T> hedged(Supplier<Mono<T>> request, Duration hedgeDelay) {
+    if (hedgeDelay.isZero() || hedgeDelay.isNegative())
+      return Mono.defer(request);
+    return Mono.firstWithValue(Mono.defer(request), Mono.delay(hedgeDelay).then(Mono.defer(request)));
+  }
+}
@@ -0,0 +1,188 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.bson.Document;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import com.bank.bootcamp.fixedaccounts.entity.Account;
+import com.bank.bootcamp.fixedaccounts.entity.LedgerScanReport;
+import com.bank.bootcamp.fixedaccounts.entity.Sequence;
+import com.bank.bootcamp.fixedaccounts.entity.Transaction;
+import com.bank.bootcamp.fixedaccounts.entity.TransactionSequences;
+import com.bank.bootcamp.fixedaccounts.entity.TransferRollback;
+import com.bank.bootcamp.fixedaccounts.repository.LedgerScanReportRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+/**
+ * Nightly integrity check of the {@code Transactions} ledger: duplicate, missing or unknown
+ * operation numbers, sent transfers whose remote leg was never confirmed, comissions without
+ * their movement and accounts whose running balance went negative.
+ * <p>
+ * The ledger is split in ranges of {@code ledger.scan.partition-size} accounts, read in parallel
+ * ({@code ledger.scan.parallelism}) through the {accountId, registerDate, operationNumber} index.
+ * Each partition reads batches of {@code ledger.scan.batch-size} transactions with a pause of
+ * {@code ledger.scan.batch-pause-ms} between them, so the scan reads at most
+ * {@code parallelism * batch-size} documents per pause from the primary and keeps about that
+ * many in memory.
+ * <p>
+ * Only transactions registered before the scan read the sequence counters are checked, so movements
+ * registered while it runs are not reported as unknown. Sent transfers rolled back because the
+ * target rejected the credit are removed from the ledger; their numbers come from
+ * {@code TransferRollbacks} and are not reported as missing.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerScanService {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final LedgerScanReportRepository ledgerScanReportRepository;
+  private final Environment env;
+
+  @Scheduled(cron = "${ledger.scan.cron:0 30 3 * * *}")
+  public void scheduledScan() {
+    if (!Boolean.parseBoolean(Optional.ofNullable(env.getProperty("ledger.scan.enabled")).orElse("true")))
+      return;
+    scan(LocalDate.now()).subscribe(
+        report -> log.info("Ledger scan {} finished: {} accounts, {} transactions, findings {}",
+            report.getId(), report.getAccountsScanned(), report.getTransactionsScanned(), report.getFindingCounts()),
+        e -> log.error("Ledger scan failed", e));
+  }
+
+  /** Empty when another instance already started the scan for that date. */
+  public Mono<LedgerScanReport> scan(LocalDate scanDate) {
+    var report = new LedgerScanReport();
+    report.setId(scanDate.toString());
+    report.setStatus(LedgerScanReport.RUNNING);
+    report.setStartedAt(LocalDateTime.now());
+    return ledgerScanReportRepository.insert(report)
+        .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())
+        .flatMap(running -> issuedOperationNumbers()
+            .flatMap(issued -> {
+              var transferGrace = Duration.ofMinutes(longProperty("ledger.scan.transfer-grace-minutes", 10));
+              var state = new LedgerScanState(issued.getT1(), issued.getT2(),
+                  running.getStartedAt().minus(transferGrace), (int) longProperty("ledger.scan.max-samples", 100));
+              running.setHighestIssuedOperationNumber(issued.getT1());
+              // Todo lo registrado antes de este momento tiene un numero ya emitido por los contadores leidos
+              var registeredBefore = LocalDateTime.now();
+              return rolledBackOperationNumbers(issued.getT1())
+                  .doOnNext(state::markRolledBack)
+                  .then(partitions())
+                  .doOnNext(ranges -> running.setPartitions(ranges.size()))
+                  .flatMapMany(Flux::fromIterable)
+                  .flatMap(range -> scanPartition(range, registeredBefore, state.newPartition()), (int) longProperty("ledger.scan.parallelism", 4))
+                  .then(Mono.fromRunnable(state::findMissingOperationNumbers).subscribeOn(Schedulers.boundedElastic()))
+                  .then(Mono.fromSupplier(() -> {
+                    running.setStatus(LedgerScanReport.COMPLETED);
+                    running.setAccountsScanned(state.getAccounts());
+                    running.setTransactionsScanned(state.getTransactions());
+                    running.setFindingCounts(state.getCounts());
+                    running.setSamples(state.getSamples());
+                    return running;
+                  }));
+            })
+            .onErrorResume(e -> {
+              running.setStatus(LedgerScanReport.FAILED);
+              running.setError(e.getMessage());
+              return Mono.just(running);
+            })
+            .flatMap(finished -> {
+              finished.setFinishedAt(LocalDateTime.now());
+              return ledgerScanReportRepository.save(finished);
+            }));
+  }
+
+  /**
+   * Highest number handed out by any counter of the transaction sequence, and the value of the
+   * single counter, below which numbers were issued without gaps. A stripe named
+   * {@code <seq>-<stripe>-of-<stripes>} has issued up to {@code seq * stripes + stripe}.
+   */
+  private Mono<Tuple2<Integer, Integer>> issuedOperationNumbers() {
+    var seqName = TransactionSequences.class.getSimpleName();
+    return mongoTemplate.find(query(where("_id").regex("^" + seqName + "(-\\d+-of-\\d+)?$")), Document.class,
+            mongoTemplate.getCollectionName(Sequence.class))
+        .map(counter -> {
+          var id = counter.get("_id").toString();
+          var seq = ((Number) counter.get("seq")).intValue();
+          if (id.equals(seqName))
+            return Tuples.of(seq, seq);
+          var stripe = id.substring(seqName.length() + 1).split("-of-");
+          return Tuples.of(Math.toIntExact((long) seq * Integer.parseInt(stripe[1]) + Integer.parseInt(stripe[0])), 0);
+        })
+        .reduce(Tuples.of(0, 0), (a, b) -> Tuples.of(Math.max(a.getT1(), b.getT1()), Math.max(a.getT2(), b.getT2())));
+  }
+
+  private Flux<Integer> rolledBackOperationNumbers(int highestIssued) {
+    var rollbacks = query(where("operationNumber").lte(highestIssued));
+    rollbacks.fields().include("operationNumber");
+    return mongoTemplate.find(rollbacks, TransferRollback.class)
+        .map(TransferRollback::getOperationNumber);
+  }
+
+  /**
+   * Account ID ranges {@code [from, to)} of about {@code ledger.scan.partition-size} accounts each;
+   * the first and last ranges are open so transactions of unknown accounts are checked as well.
+   * Bounds are sorted as strings, the way {@code Transactions.accountId} compares: older accounts
+   * have string IDs and newer ones ObjectIds, which Mongo sorts by type first.
+   */
+  private Mono<List<String[]>> partitions() {
+    var partitionSize = longProperty("ledger.scan.partition-size", 1000);
+    var accountIds = new Query().with(Sort.by("_id"));
+    accountIds.fields().include("_id");
+    return mongoTemplate.find(accountIds, Document.class, mongoTemplate.getCollectionName(Account.class))
+        .index()
+        .filter(account -> account.getT1() > 0 && account.getT1() % partitionSize == 0)
+        .map(account -> account.getT2().get("_id").toString())
+        .collectSortedList()
+        .map(bounds -> {
+          var ranges = new ArrayList<String[]>(bounds.size() + 1);
+          String from = null;
+          for (var to : bounds) {
+            ranges.add(new String[] { from, to });
+            from = to;
+          }
+          ranges.add(new String[] { from, null });
+          return ranges;
+        });
+  }
+
+  private Mono<Void> scanPartition(String[] range, LocalDateTime registeredBefore, LedgerScanState.Partition partition) {
+    var batchSize = (int) longProperty("ledger.scan.batch-size", 500);
+    var batchPause = Duration.ofMillis(longProperty("ledger.scan.batch-pause-ms", 50));
+    var accountRange = where("accountId").exists(true);
+    if (range[0] != null)
+      accountRange = accountRange.gte(range[0]);
+    if (range[1] != null)
+      accountRange = accountRange.lt(range[1]);
+    var ledger = query(accountRange.and("registerDate").lt(registeredBefore)).with(Sort.by("accountId", "registerDate")).cursorBatchSize(batchSize);
+    ledger.fields().exclude("agent");
+    return mongoTemplate.find(ledger, Transaction.class)
+        .buffer(batchSize)
+        // Un lote a la vez y una pausa entre lotes para no competir con el trafico en linea
+        .concatMap(batch -> Mono.delay(batchPause).thenReturn(batch), 1)
+        .doOnNext(batch -> batch.forEach(partition::accept))
+        .then(Mono.fromRunnable(partition::finish));
+  }
+
+  private long longProperty(String name, long defaultValue) {
+    return Optional.ofNullable(env.getProperty(name)).map(Long::parseLong).orElse(defaultValue);
+  }
+}
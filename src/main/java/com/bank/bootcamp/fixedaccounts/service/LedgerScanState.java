@@ -0,0 +1,192 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import com.bank.bootcamp.fixedaccounts.entity.LedgerFinding;
+import com.bank.bootcamp.fixedaccounts.entity.LedgerFindingType;
+import com.bank.bootcamp.fixedaccounts.entity.Money;
+import com.bank.bootcamp.fixedaccounts.entity.Transaction;
+
+/**
+ * State shared by the partitions of one ledger scan.
+ * <p>
+ * Operation numbers come from one sequence for the whole ledger, so duplicates are found with a
+ * bitmap of every issued number ({@code highestIssued / 8} bytes) that all partitions set
+ * concurrently. Everything else is checked per account by a {@link Partition}, which only keeps
+ * the account it is reading.
+ */
+class LedgerScanState {
+
+  private final int highestIssued;
+  private final int contiguousUpTo;
+  private final LocalDateTime transferDeadline;
+  private final int maxSamples;
+  private final AtomicLongArray operationNumbers;
+  private final Set<Integer> rolledBack = new HashSet<>();
+  private final Map<LedgerFindingType, AtomicLong> counts = new EnumMap<>(LedgerFindingType.class);
+  private final List<LedgerFinding> samples = new ArrayList<>();
+  private final AtomicLong accounts = new AtomicLong();
+  private final AtomicLong transactions = new AtomicLong();
+
+  /**
+   * @param highestIssued highest operation number any sequence counter has handed out
+   * @param contiguousUpTo numbers up to this one were issued without gaps (the single counter);
+   *     striped counters start above it, so missing numbers are only looked for below
+   * @param transferDeadline sent transfers newer than this may still be waiting for the remote leg
+   */
+  LedgerScanState(int highestIssued, int contiguousUpTo, LocalDateTime transferDeadline, int maxSamples) {
+    this.highestIssued = highestIssued;
+    this.contiguousUpTo = Math.min(contiguousUpTo, highestIssued);
+    this.transferDeadline = transferDeadline;
+    this.maxSamples = maxSamples;
+    this.operationNumbers = new AtomicLongArray((Math.max(highestIssued, 0) >>> 6) + 1);
+    for (var type : LedgerFindingType.values())
+      counts.put(type, new AtomicLong());
+  }
+
+  Partition newPartition() {
+    return new Partition();
+  }
+
+  /** Only before the partitions start. */
+  void markRolledBack(int operationNumber) {
+    rolledBack.add(operationNumber);
+  }
+
+  /** Runs once every partition completed. */
+  void findMissingOperationNumbers() {
+    for (int number = 1; number <= contiguousUpTo; number++) {
+      if ((operationNumbers.get(number >>> 6) & (1L << number)) == 0 && !rolledBack.contains(number))
+        report(LedgerFindingType.MISSING_OPERATION_NUMBER, null, number, "Issued by the sequence but not found in the ledger");
+    }
+  }
+
+  Map<LedgerFindingType, Long> getCounts() {
+    var snapshot = new EnumMap<LedgerFindingType, Long>(LedgerFindingType.class);
+    counts.forEach((type, count) -> snapshot.put(type, count.get()));
+    return snapshot;
+  }
+
+  synchronized List<LedgerFinding> getSamples() {
+    return new ArrayList<>(samples);
+  }
+
+  long getAccounts() {
+    return accounts.get();
+  }
+
+  long getTransactions() {
+    return transactions.get();
+  }
+
+  private void report(LedgerFindingType type, String accountId, Integer operationNumber, String detail) {
+    counts.get(type).incrementAndGet();
+    synchronized (this) {
+      if (samples.size() >= maxSamples)
+        return;
+      var finding = new LedgerFinding();
+      finding.setType(type);
+      finding.setAccountId(accountId);
+      finding.setOperationNumber(operationNumber);
+      finding.setDetail(detail);
+      samples.add(finding);
+    }
+  }
+
+  /** Returns false if the number was already seen. */
+  private boolean markOperationNumber(int number) {
+    var word = number >>> 6;
+    var mask = 1L << number;
+    long current;
+    do {
+      current = operationNumbers.get(word);
+      if ((current & mask) != 0)
+        return false;
+    } while (!operationNumbers.compareAndSet(word, current, current | mask));
+    return true;
+  }
+
+  /**
+   * Checks the transactions of one partition, which must arrive ordered by account and date.
+   * Not thread safe: each partition is read by a single subscriber.
+   */
+  class Partition {
+
+    private String accountId;
+    private Money balance;
+    private boolean negativeReported;
+    private final Set<Integer> movements = new HashSet<>();
+    private final Set<LocalDate> movementDays = new HashSet<>();
+    private final List<Transaction> comissions = new ArrayList<>();
+
+    void accept(Transaction tx) {
+      if (accountId == null || !accountId.equals(tx.getAccountId())) {
+        finish();
+        startAccount(tx.getAccountId());
+      }
+      transactions.incrementAndGet();
+      checkOperationNumber(tx);
+
+      balance = balance.plus(tx.getAmount() == null ? Money.ZERO : tx.getAmount());
+      if (balance.isNegative() && !negativeReported) {
+        negativeReported = true;
+        report(LedgerFindingType.NEGATIVE_BALANCE, accountId, tx.getOperationNumber(), "Balance fell to " + balance);
+      }
+
+      if (tx.getParentOperationNumber() != null || AccountService.COMISSION_DESCRIPTION.equals(tx.getDescription())) {
+        comissions.add(tx);
+      } else {
+        movements.add(tx.getOperationNumber());
+        if (tx.getRegisterDate() != null)
+          movementDays.add(tx.getRegisterDate().toLocalDate());
+      }
+
+      if (tx.getTransferTargetAccountId() != null && tx.getTransferTargetOperationNumber() == null
+          && tx.getRegisterDate() != null && tx.getRegisterDate().isBefore(transferDeadline))
+        report(LedgerFindingType.UNCONFIRMED_TRANSFER, accountId, tx.getOperationNumber(),
+            "No operation registered on target account " + tx.getTransferTargetAccountId());
+    }
+
+    /** Closes the current account; the comission check waits until here because a parent can share its timestamp. */
+    void finish() {
+      if (accountId == null)
+        return;
+      for (var comission : comissions) {
+        // Las comisiones anteriores a parentOperationNumber solo pueden validarse por el dia del movimiento
+        var hasParent = comission.getParentOperationNumber() != null
+            ? movements.contains(comission.getParentOperationNumber())
+            : comission.getRegisterDate() != null && movementDays.contains(comission.getRegisterDate().toLocalDate());
+        if (!hasParent)
+          report(LedgerFindingType.ORPHAN_COMISSION, accountId, comission.getOperationNumber(),
+              "Parent operation " + comission.getParentOperationNumber() + " not found");
+      }
+      accountId = null;
+    }
+
+    private void startAccount(String nextAccountId) {
+      accountId = nextAccountId;
+      balance = Money.ZERO;
+      negativeReported = false;
+      movements.clear();
+      movementDays.clear();
+      comissions.clear();
+      accounts.incrementAndGet();
+    }
+
+    private void checkOperationNumber(Transaction tx) {
+      var number = tx.getOperationNumber();
+      if (number == null || number < 1 || number > highestIssued)
+        report(LedgerFindingType.UNKNOWN_OPERATION_NUMBER, accountId, number, "Not issued by the sequence");
+      else if (!markOperationNumber(number))
+        report(LedgerFindingType.DUPLICATE_OPERATION_NUMBER, accountId, number, "Transaction " + tx.getId());
+    }
+  }
+}
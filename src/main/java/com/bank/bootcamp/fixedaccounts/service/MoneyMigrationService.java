@@ -0,0 +1,59 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Rewrites the {@code Transactions.amount} values still stored as doubles into {@code Decimal128}
+ * rounded to cents.
+ * <p>
+ * The rewrite is a full scan of the collection, so it runs once: when it finishes a marker is saved
+ * in {@code Migrations} and later starts only look the marker up. Instances starting at the same
+ * time may both run it, which is harmless because the update only touches double amounts.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MoneyMigrationService {
+
+  static final String MIGRATIONS_COLLECTION = "Migrations";
+  static final String MIGRATION_ID = "transactions-amount-decimal128";
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final Environment env;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void migrate() {
+    if (!Boolean.parseBoolean(Optional.ofNullable(env.getProperty("account.money-migration.enabled")).orElse("true")))
+      return;
+    run().subscribe(modified -> log.info("Migrated {} transaction amounts to Decimal128", modified),
+        e -> log.warn("Transaction amount migration failed, double amounts are still read through the converter", e));
+  }
+
+  /** Number of amounts rewritten; empty when the migration already ran. */
+  public Mono<Long> run() {
+    var doubleAmounts = new Document("amount", new Document("$type", "double"));
+    var toDecimal = List.of(new Document("$set", new Document("amount",
+        new Document("$round", List.of(new Document("$toDecimal", "$amount"), 2)))));
+    return mongoTemplate.exists(query(where("_id").is(MIGRATION_ID)), MIGRATIONS_COLLECTION)
+        .filter(done -> !done)
+        .flatMap(pending -> mongoTemplate.getCollection("Transactions"))
+        .flatMap(collection -> Mono.from(collection.updateMany(doubleAmounts, toDecimal)))
+        .flatMap(result -> mongoTemplate.save(new Document("_id", MIGRATION_ID)
+                .append("finishedAt", new Date())
+                .append("modified", result.getModifiedCount()), MIGRATIONS_COLLECTION)
+            .thenReturn(result.getModifiedCount()));
+  }
+}
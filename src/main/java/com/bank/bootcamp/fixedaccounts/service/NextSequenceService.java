@@ -3,6 +3,12 @@ package com.bank.bootcamp.fixedaccounts.service;
 import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import org.bson.Document;
+import org.springframework.core.env.Environment;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
@@ -15,6 +21,8 @@ import reactor.core.publisher.Mono;
 public class NextSequenceService {
 
   private final ReactiveMongoTemplate mongoTemplate;
+  private final Environment env;
+  private final Map<String, Mono<Void>> seededStripes = new ConcurrentHashMap<>();
 
   public <T extends Sequence> Mono<Integer> getNextSequence(String seqName)
   {
@@ -25,4 +33,53 @@ public class NextSequenceService {
           Sequence.class);
       return counter.map(seq -> seq.getSeq());
   }
+
+  /**
+   * Next number of a sequence split in {@code sequence.stripes} counter documents, so no single
+   * document (and no single shard) takes every increment. The stripe is picked from the routing
+   * key, which keeps the numbers of one routing key increasing; a stripe hands out
+   * {@code counter * stripes + stripe}, so stripes never overlap. With one stripe (the default)
+   * this is {@link #getNextSequence(String)}.
+   * <p>
+   * A new stripe starts above the highest number already handed out by the single counter or by
+   * the stripes of any earlier {@code sequence.stripes} value. Switching all instances to the new
+   * value at once keeps numbers unique; instances still issuing with the old value during a rolling
+   * change can collide with the new stripes.
+   */
+  public Mono<Integer> getNextSequence(String seqName, String routingKey) {
+    var stripes = Integer.parseInt(Optional.ofNullable(env.getProperty("sequence.stripes")).orElse("1"));
+    if (stripes <= 1)
+      return getNextSequence(seqName);
+    var stripe = Math.floorMod(Optional.ofNullable(routingKey).orElse("").hashCode(), stripes);
+    var stripeName = String.format("%s-%s-of-%s", seqName, stripe, stripes);
+    return seededStripes.computeIfAbsent(stripeName, name -> seedStripe(seqName, name, stripes).cache())
+        .then(getNextSequence(stripeName))
+        .map(counter -> Math.toIntExact((long) counter * stripes + stripe));
+  }
+
+  private Mono<Void> seedStripe(String seqName, String stripeName, int stripes) {
+    return highestIssued(seqName)
+        .flatMap(highest -> mongoTemplate.upsert(
+            query(where("_id").is(stripeName)),
+            new Update().max("seq", highest / stripes + 1),
+            Sequence.class))
+        .then()
+        .doOnError(e -> seededStripes.remove(stripeName));
+  }
+
+  /** Highest number issued by the single counter or any stripe; {@code <seq>-<s>-of-<n>} has issued up to {@code seq * n + s}. */
+  private Mono<Integer> highestIssued(String seqName) {
+    return mongoTemplate.find(query(where("_id").regex("^" + Pattern.quote(seqName) + "(-\\d+-of-\\d+)?$")), Document.class,
+            mongoTemplate.getCollectionName(Sequence.class))
+        .map(counter -> {
+          var id = counter.get("_id").toString();
+          var seq = ((Number) counter.get("seq")).longValue();
+          if (id.equals(seqName))
+            return seq;
+          var stripe = id.substring(seqName.length() + 1).split("-of-");
+          return seq * Integer.parseInt(stripe[1]) + Integer.parseInt(stripe[0]);
+        })
+        .reduce(0L, Math::max)
+        .map(Math::toIntExact);
+  }
 }
@@ -0,0 +1,125 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+
+/**
+ * Minimal PDF 1.4 writer that emits one page per chunk.
+ * <p>
+ * Each page is written as soon as its lines arrive. Only the object offsets and page object
+ * numbers are kept until the end, because the page tree and the cross-reference table need them.
+ * Text uses the standard Courier font so the columns line up without embedding any font.
+ */
+class PdfStatementWriter implements StatementWriter {
+
+  private static final int LINES_PER_PAGE = 66;
+  private static final int CATALOG = 1;
+  private static final int PAGES = 2;
+  private static final int FONT = 3;
+  private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+  private static final String COLUMNS = String.format("%-16s %9s %-38s %-20s %13s %13s",
+      "Date", "Operation", "Description", "Agent", "Amount", "Balance");
+
+  private final DataBufferFactory bufferFactory;
+  private final String title;
+  private final List<Long> objectOffsets = new ArrayList<>();
+  private final List<Integer> pageObjects = new ArrayList<>();
+  private long position = 0;
+
+  PdfStatementWriter(DataBufferFactory bufferFactory, String title) {
+    this.bufferFactory = bufferFactory;
+    this.title = title;
+  }
+
+  @Override
+  public int batchSize() {
+    return LINES_PER_PAGE;
+  }
+
+  @Override
+  public DataBuffer begin() {
+    var pdf = new StringBuilder(256);
+    pdf.append("%PDF-1.4\n%âãÏÓ\n");
+    startObject(pdf, CATALOG).append("<< /Type /Catalog /Pages ").append(PAGES).append(" 0 R >>\nendobj\n");
+    objectOffsets.add(null); // el arbol de paginas se escribe al final
+    startObject(pdf, FONT).append("<< /Type /Font /Subtype /Type1 /BaseFont /Courier /Encoding /WinAnsiEncoding >>\nendobj\n");
+    return emit(pdf);
+  }
+
+  @Override
+  public DataBuffer write(List<StatementLine> lines) {
+    var content = new StringBuilder(lines.size() * 140 + 256);
+    content.append("BT /F1 7.5 Tf 10 TL 36 806 Td (").append(escape(title)).append(") Tj T* T* (")
+        .append(escape(COLUMNS)).append(") Tj T*\n");
+    for (var line : lines) {
+      content.append('(').append(escape(String.format("%-16s %9s %-38.38s %-20.20s %13s %13s",
+          line.getRegisterDate() == null ? "" : DATE_FORMAT.format(line.getRegisterDate()),
+          line.getOperationNumber() == null ? "" : line.getOperationNumber(),
+          line.getDescription() == null ? "" : line.getDescription(),
+          line.getAgent() == null ? "" : line.getAgent(),
+          line.getAmount() == null ? "" : line.getAmount(),
+          line.getBalance()))).append(") Tj T*\n");
+    }
+    content.append("ET");
+
+    var pdf = new StringBuilder(content.length() + 256);
+    var contentObject = objectOffsets.size() + 1;
+    startObject(pdf, contentObject).append("<< /Length ").append(content.length()).append(" >>\nstream\n")
+        .append(content).append("\nendstream\nendobj\n");
+    var pageObject = objectOffsets.size() + 1;
+    startObject(pdf, pageObject).append("<< /Type /Page /Parent ").append(PAGES)
+        .append(" 0 R /MediaBox [0 0 595 842] /Resources << /Font << /F1 ").append(FONT)
+        .append(" 0 R >> >> /Contents ").append(contentObject).append(" 0 R >>\nendobj\n");
+    pageObjects.add(pageObject);
+    return emit(pdf);
+  }
+
+  @Override
+  public DataBuffer finish() {
+    var pdf = new StringBuilder(pageObjects.size() * 30 + objectOffsets.size() * 20 + 256);
+    startObject(pdf, PAGES).append("<< /Type /Pages /Count ").append(pageObjects.size()).append(" /Kids [");
+    pageObjects.forEach(page -> pdf.append(page).append(" 0 R "));
+    pdf.append("] >>\nendobj\n");
+
+    var xref = position + pdf.length();
+    pdf.append("xref\n0 ").append(objectOffsets.size() + 1).append("\n0000000000 65535 f \n");
+    objectOffsets.forEach(offset -> pdf.append(String.format("%010d 00000 n \n", offset)));
+    pdf.append("trailer\n<< /Size ").append(objectOffsets.size() + 1).append(" /Root ").append(CATALOG)
+        .append(" 0 R >>\nstartxref\n").append(xref).append("\n%%EOF\n");
+    return emit(pdf);
+  }
+
+  private StringBuilder startObject(StringBuilder pdf, int objectNumber) {
+    var offset = position + pdf.length();
+    if (objectNumber > objectOffsets.size())
+      objectOffsets.add(offset);
+    else
+      objectOffsets.set(objectNumber - 1, offset);
+    return pdf.append(objectNumber).append(" 0 obj\n");
+  }
+
+  /** Every char is a single WinAnsi byte, so the builder length is the byte count used for offsets. */
+  private DataBuffer emit(StringBuilder pdf) {
+    var bytes = pdf.toString().getBytes(StandardCharsets.ISO_8859_1);
+    position += bytes.length;
+    return bufferFactory.allocateBuffer(bytes.length).write(bytes);
+  }
+
+  private static String escape(String text) {
+    var escaped = new StringBuilder(text.length() + 8);
+    for (int i = 0; i < text.length(); i++) {
+      var c = text.charAt(i);
+      if (c == '\\' || c == '(' || c == ')')
+        escaped.append('\\').append(c);
+      else if (c < 0x20 || c > 0xff)
+        escaped.append('?');
+      else
+        escaped.append(c);
+    }
+    return escaped.toString();
+  }
+}
@@ -0,0 +1,64 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Single-flight reads: concurrent calls with the same key subscribe to one in-flight load.
+ * <p>
+ * With a TTL above zero a successful result is also kept for that long (micro-cache); errors are
+ * never kept. Publishes {@code coalescer.requests} and {@code coalescer.loads} counters tagged with
+ * the coalescer name, so {@code 1 - loads / requests} is the share of reads that were saved.
+ */
+public class RequestCoalescer<K, V> {
+
+  private final Map<K, Mono<V>> flights = new ConcurrentHashMap<>();
+  private final Counter requests;
+  private final Counter loads;
+
+  public RequestCoalescer(String name) {
+    requests = Counter.builder("coalescer.requests").tag("name", name)
+        .description("Reads asked to the coalescer").register(Metrics.globalRegistry);
+    loads = Counter.builder("coalescer.loads").tag("name", name)
+        .description("Reads that actually ran the load").register(Metrics.globalRegistry);
+    Gauge.builder("coalescer.in-flight", flights, Map::size).tag("name", name)
+        .description("Loads in flight or kept by the micro-cache").register(Metrics.globalRegistry);
+  }
+
+  public Mono<V> execute(K key, Duration ttl, Supplier<Mono<V>> loader) {
+    if (key == null)
+      return Mono.defer(loader);
+    return Mono.defer(() -> {
+      requests.increment();
+      return flights.computeIfAbsent(key, k -> newFlight(k, ttl, loader));
+    });
+  }
+
+  /** Drops the shared load or cached value so the next read runs a new load, e.g. after a write. */
+  public void invalidate(K key) {
+    if (key != null)
+      flights.remove(key);
+  }
+
+  private Mono<V> newFlight(K key, Duration ttl, Supplier<Mono<V>> loader) {
+    loads.increment();
+    var flight = new AtomicReference<Mono<V>>();
+    flight.set(Mono.defer(loader)
+        .doFinally(signal -> {
+          if (signal == SignalType.ON_ERROR || ttl.isZero() || ttl.isNegative())
+            flights.remove(key, flight.get());
+          else
+            Mono.delay(ttl).subscribe(tick -> flights.remove(key, flight.get()));
+        })
+        .cache());
+    return flight.get();
+  }
+}
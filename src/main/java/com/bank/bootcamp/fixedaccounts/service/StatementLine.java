@@ -0,0 +1,16 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import java.time.LocalDateTime;
+import com.bank.bootcamp.fixedaccounts.entity.Money;
+import lombok.Value;
+
+/** One row of an account statement: a movement and the balance right after it. */
+@Value
+class StatementLine {
+  LocalDateTime registerDate;
+  Integer operationNumber;
+  String description;
+  String agent;
+  Money amount;
+  Money balance;
+}
@@ -0,0 +1,60 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.stereotype.Service;
+import com.bank.bootcamp.fixedaccounts.dto.StatementFormat;
+import com.bank.bootcamp.fixedaccounts.entity.Money;
+import com.bank.bootcamp.fixedaccounts.exception.BankValidationException;
+import com.bank.bootcamp.fixedaccounts.repository.AccountRepository;
+import com.bank.bootcamp.fixedaccounts.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Yearly account statements streamed straight from the {@code Transactions} cursor.
+ * <p>
+ * Lines are rendered in fixed-size batches into buffers taken from the response's
+ * {@link DataBufferFactory}, so memory stays bounded by one batch whatever the statement size.
+ */
+@Service
+@RequiredArgsConstructor
+public class StatementService {
+
+  private final AccountRepository accountRepository;
+  private final TransactionRepository transactionRepository;
+
+  public Flux<DataBuffer> exportStatement(String accountId, Integer year, StatementFormat format, DataBufferFactory bufferFactory) {
+    return Mono.justOrEmpty(accountId)
+        .switchIfEmpty(Mono.error(new BankValidationException("Account Id is required")))
+        .then(Mono.justOrEmpty(year).switchIfEmpty(Mono.error(new BankValidationException("Year is required"))))
+        .then(Mono.justOrEmpty(format).switchIfEmpty(Mono.error(new BankValidationException("Statement format is required"))))
+        .then(accountRepository.findById(accountId))
+        .switchIfEmpty(Mono.error(new BankValidationException("Account not found")))
+        .flatMapMany(account -> {
+          var yearStart = LocalDate.of(year, 1, 1);
+          var nextYearStart = yearStart.plusYears(1);
+          var writer = format == StatementFormat.PDF
+              ? new PdfStatementWriter(bufferFactory, String.format("Fixed account %s - statement %s", account.getId(), year))
+              : new CsvStatementWriter(bufferFactory);
+
+          return transactionRepository.getBalanceByAccountIdToDate(account.getId(), yearStart)
+              .map(total -> Money.of(total.bigDecimalValue()))
+              .defaultIfEmpty(Money.ZERO)
+              .flatMapMany(openingBalance -> {
+                var balance = new AtomicReference<>(openingBalance);
+                var opening = new StatementLine(yearStart.atStartOfDay(), null, "Opening balance", null, null, openingBalance);
+                var movements = transactionRepository.streamByAccountIdAndPeriod(account.getId(), yearStart.atStartOfDay(), nextYearStart.atStartOfDay())
+                    .map(tx -> new StatementLine(tx.getRegisterDate(), tx.getOperationNumber(), tx.getDescription(), tx.getAgent(),
+                        tx.getAmount(), balance.accumulateAndGet(tx.getAmount(), Money::plus)));
+                return Flux.concat(
+                    Mono.fromSupplier(writer::begin),
+                    Flux.concat(Mono.just(opening), movements).buffer(writer.batchSize()).map(writer::write),
+                    Mono.fromSupplier(writer::finish));
+              });
+        });
+  }
+}
@@ -0,0 +1,20 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import java.util.List;
+import org.springframework.core.io.buffer.DataBuffer;
+
+/**
+ * Renders a statement in chunks so it can be streamed: {@link #begin()} once, {@link #write(List)}
+ * for every batch of at most {@link #batchSize()} lines, {@link #finish()} once. Implementations
+ * only keep what is needed between chunks, never the whole statement.
+ */
+interface StatementWriter {
+
+  int batchSize();
+
+  DataBuffer begin();
+
+  DataBuffer write(List<StatementLine> lines);
+
+  DataBuffer finish();
+}
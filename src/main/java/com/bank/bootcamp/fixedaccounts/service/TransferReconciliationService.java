@@ -0,0 +1,52 @@
+package com.bank.bootcamp.fixedaccounts.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resolves sent transfers left pending because the target did not answer. Every
+ * {@code transfer.reconcile.interval-ms} the credits of unconfirmed transfers older than
+ * {@code transfer.reconcile.grace-seconds} and newer than {@code transfer.reconcile.max-age-hours}
+ * are sent again with their idempotency key; older ones are left to the ledger scan, which reports
+ * them as unconfirmed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransferReconciliationService {
+
+  private final AccountService accountService;
+  private final Environment env;
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  @Scheduled(fixedDelayString = "${transfer.reconcile.interval-ms:60000}", initialDelayString = "${transfer.reconcile.interval-ms:60000}")
+  public void scheduledReconciliation() {
+    if (!Boolean.parseBoolean(Optional.ofNullable(env.getProperty("transfer.reconcile.enabled")).orElse("true")))
+      return;
+    // La ejecucion anterior aun no termina
+    if (!running.compareAndSet(false, true))
+      return;
+    var now = LocalDateTime.now();
+    var grace = Duration.ofSeconds(longProperty("transfer.reconcile.grace-seconds", 60));
+    var maxAge = Duration.ofHours(longProperty("transfer.reconcile.max-age-hours", 24));
+    accountService.reconcileTransfers(now.minus(maxAge), now.minus(grace))
+        .doFinally(signal -> running.set(false))
+        .subscribe(
+            resolved -> {
+              if (resolved > 0)
+                log.info("Resolved {} pending transfers", resolved);
+            },
+            e -> log.error("Transfer reconciliation failed", e));
+  }
+
+  private long longProperty(String name, long defaultValue) {
+    return Optional.ofNullable(env.getProperty(name)).map(Long::parseLong).orElse(defaultValue);
+  }
+}
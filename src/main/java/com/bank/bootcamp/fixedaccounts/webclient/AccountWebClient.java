@@ -1,29 +1,105 @@
 package com.bank.bootcamp.fixedaccounts.webclient;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import javax.annotation.PreDestroy;
 import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
 import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
 import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import com.bank.bootcamp.fixedaccounts.config.CodecConfig;
 import com.bank.bootcamp.fixedaccounts.dto.AccountType;
+import com.bank.bootcamp.fixedaccounts.dto.BalanceDTO;
 import com.bank.bootcamp.fixedaccounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.fixedaccounts.dto.TransactionBatchResultDTO;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
 public class AccountWebClient {
+  private final ReactiveResilience4JCircuitBreakerFactory reactiveCircuitBreakerFactory;
   private final ReactiveCircuitBreaker reactiveCircuitBreaker;
   private WebClient webClient;
+  private MediaType wireFormat;
+  private TransferCreditBatcher transferCreditBatcher;
   
-  public AccountWebClient(ReactiveResilience4JCircuitBreakerFactory reactiveCircuitBreakerFactory, Environment env) {
+  public AccountWebClient(ReactiveResilience4JCircuitBreakerFactory reactiveCircuitBreakerFactory, Environment env, WebClient.Builder webClientBuilder) {
+    this.reactiveCircuitBreakerFactory = reactiveCircuitBreakerFactory;
     this.reactiveCircuitBreaker = reactiveCircuitBreakerFactory.create("products");
-    webClient = WebClient.create(env.getProperty("gateway.url"));
+    webClient = webClientBuilder.baseUrl(env.getProperty("gateway.url")).build();
+    // "smile" solo cuando todos los servicios de productos ya aceptan el codec binario
+    wireFormat = "smile".equalsIgnoreCase(env.getProperty("gateway.wire-format")) ? CodecConfig.APPLICATION_SMILE : MediaType.APPLICATION_JSON;
+    // Agrupa los abonos de transferencias por producto destino; los servicios destino deben exponer /transaction/batch
+    if (Boolean.parseBoolean(Optional.ofNullable(env.getProperty("transfer.batching.enabled")).orElse("false"))) {
+      // El destino registra el lote uno por uno, el limite de tiempo por defecto (1 s) es para una sola llamada
+      var batchTimeout = Duration.ofMillis(Long.parseLong(Optional.ofNullable(env.getProperty("transfer.batching.timeout-ms")).orElse("5000")));
+      for (var accountType : AccountType.values())
+        reactiveCircuitBreakerFactory.configure(builder -> builder.timeLimiterConfig(TimeLimiterConfig.custom().timeoutDuration(batchTimeout).build()),
+            batchCircuitBreakerId(accountType));
+      transferCreditBatcher = new TransferCreditBatcher(this::createTransactions,
+          Integer.parseInt(Optional.ofNullable(env.getProperty("transfer.batching.max-size")).orElse("50")),
+          Duration.ofMillis(Long.parseLong(Optional.ofNullable(env.getProperty("transfer.batching.window-ms")).orElse("20"))),
+          Integer.parseInt(Optional.ofNullable(env.getProperty("transfer.batching.max-in-flight")).orElse("4")));
+    }
   }
   
+  /**
+   * Failures reach the caller, which decides between retrying and rolling back the debit; with
+   * {@code transfer.batching.enabled} the credit travels in a bulk call.
+   */
   public Mono<Integer> createTransaction(AccountType accountType, CreateTransactionDTO dto) {
+    if (transferCreditBatcher != null)
+      return transferCreditBatcher.submit(accountType, dto);
 
     return webClient.post()
         .uri(String.format("/%s/transaction", accountType.getResource()))
+        .contentType(wireFormat)
+        .accept(wireFormat, MediaType.APPLICATION_JSON)
         .bodyValue(dto).retrieve().bodyToMono(Integer.class)
-        .transform(balance -> reactiveCircuitBreaker.run(balance, throwable -> Mono.empty()));
+        .transform(balance -> reactiveCircuitBreaker.run(balance, Mono::error));
+  }
+  
+  /**
+   * Registers several transactions in one call; results come back in the same order. Has its own
+   * circuit breaker, whose time limit ({@code transfer.batching.timeout-ms}) covers the whole batch.
+   */
+  public Flux<TransactionBatchResultDTO> createTransactions(AccountType accountType, List<CreateTransactionDTO> dtos) {
+    
+    return webClient.post()
+        .uri(String.format("/%s/transaction/batch", accountType.getResource()))
+        .contentType(wireFormat)
+        .accept(wireFormat, MediaType.APPLICATION_JSON)
+        .bodyValue(dtos).retrieve().bodyToFlux(TransactionBatchResultDTO.class)
+        .transform(results -> reactiveCircuitBreakerFactory.create(batchCircuitBreakerId(accountType)).run(results, Flux::error));
+  }
+  
+  private static String batchCircuitBreakerId(AccountType accountType) {
+    return "products-" + accountType.getResource() + "-batch";
+  }
+  
+  @PreDestroy
+  public void flushTransferCredits() {
+    if (transferCreditBatcher != null)
+      transferCreditBatcher.close();
+  }
+  
+  /**
+   * Balances of the customer in another product service, never this one. Each product has its own
+   * circuit breaker so a failing service does not open it for the rest; failures are propagated to
+   * the caller, except a 404, which means the customer has none of that product.
+   */
+  public Flux<BalanceDTO> getBalancesByCustomer(AccountType accountType, String customerId) {
+    
+    return webClient.get()
+        .uri(String.format("/%s/balance/byCustomer/{customerId}", accountType.getResource()), customerId)
+        .accept(wireFormat, MediaType.APPLICATION_JSON)
+        .retrieve().bodyToFlux(BalanceDTO.class)
+        .onErrorResume(WebClientResponseException.NotFound.class, e -> Flux.empty()) // el cliente no tiene ese producto
+        .transform(balances -> reactiveCircuitBreakerFactory.create("products-" + accountType.getResource()).run(balances, Flux::error));
   }
 }
@@ -0,0 +1,96 @@
+package com.bank.bootcamp.fixedaccounts.webclient;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import com.bank.bootcamp.fixedaccounts.dto.AccountType;
+import com.bank.bootcamp.fixedaccounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.fixedaccounts.dto.TransactionBatchResultDTO;
+import com.bank.bootcamp.fixedaccounts.exception.BankValidationException;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Groups the credits sent to each product service and registers each group with one bulk call.
+ * <p>
+ * A group is sent when it reaches the size limit or when the window since its first credit ends,
+ * whichever comes first. Each caller still gets the operation number of its own credit, or its
+ * own error; only an error reported by the target is a rejection, a result with neither is treated
+ * like a failed call. Credits are never netted: every transfer needs its own movement and operation number
+ * on the target ledger, and the target checks its movement limits per credit.
+ */
+@Slf4j
+class TransferCreditBatcher {
+
+  private final Map<AccountType, FluxSink<PendingCredit>> queues = new EnumMap<>(AccountType.class);
+  private final BiFunction<AccountType, List<CreateTransactionDTO>, Flux<TransactionBatchResultDTO>> bulkCall;
+  private boolean closed;
+
+  TransferCreditBatcher(BiFunction<AccountType, List<CreateTransactionDTO>, Flux<TransactionBatchResultDTO>> bulkCall,
+      int maxSize, Duration window, int maxInFlight) {
+    this.bulkCall = bulkCall;
+    for (var type : AccountType.values()) {
+      Flux.<PendingCredit>create(sink -> queues.put(type, sink))
+          .bufferTimeout(maxSize, window)
+          .onBackpressureBuffer() // bufferTimeout emite por tiempo aunque no haya demanda
+          .flatMap(batch -> send(type, batch), maxInFlight)
+          .subscribe();
+    }
+  }
+
+  /** Fails right away once closed; a credit queued after the sink completed would never be answered. */
+  Mono<Integer> submit(AccountType accountType, CreateTransactionDTO dto) {
+    return Mono.create(result -> {
+      synchronized (this) {
+        if (closed)
+          result.error(new IllegalStateException("Transfer credits are no longer accepted"));
+        else
+          queues.get(accountType).next(new PendingCredit(dto, result));
+      }
+    });
+  }
+
+  /** Sends what is still queued and stops accepting credits. */
+  synchronized void close() {
+    closed = true;
+    queues.values().forEach(FluxSink::complete);
+  }
+
+  private Mono<Void> send(AccountType accountType, List<PendingCredit> batch) {
+    return bulkCall.apply(accountType, batch.stream().map(PendingCredit::getDto).collect(Collectors.toList()))
+        .collectList()
+        .doOnNext(results -> {
+          if (results.size() != batch.size())
+            throw new IllegalStateException(String.format("Expected %s results from %s, got %s", batch.size(), accountType, results.size()));
+          for (int i = 0; i < batch.size(); i++) {
+            var result = results.get(i);
+            if (result.getError() != null)
+              batch.get(i).getResult().error(new BankValidationException(result.getError()));
+            else if (result.getOperationNumber() != null)
+              batch.get(i).getResult().success(result.getOperationNumber());
+            else
+              // Sin numero ni error no se sabe si el destino registro el abono: no es un rechazo
+              batch.get(i).getResult().error(new IllegalStateException(String.format("Incomplete result %s of %s from %s", i, batch.size(), accountType)));
+          }
+        })
+        .doOnError(e -> {
+          log.warn("Batch of {} credits to {} failed", batch.size(), accountType, e);
+          batch.forEach(credit -> credit.getResult().error(e));
+        })
+        .onErrorResume(e -> Mono.empty())
+        .then();
+  }
+
+  @Value
+  private static class PendingCredit {
+    CreateTransactionDTO dto;
+    MonoSink<Integer> result;
+  }
+}
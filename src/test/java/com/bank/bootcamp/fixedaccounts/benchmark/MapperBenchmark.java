@@ -0,0 +1,55 @@
+package com.bank.bootcamp.fixedaccounts.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.bank.bootcamp.fixedaccounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.fixedaccounts.entity.Money;
+import com.bank.bootcamp.fixedaccounts.entity.Transaction;
+import com.bank.bootcamp.fixedaccounts.mapper.TransactionMapper;
+
+/**
+ * ModelMapper vs the explicit mapper on the transaction hot path.
+ * {@code mvn -Pbenchmark test -Dbenchmark.include=MapperBenchmark}; the gc profiler reports bytes per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+  private ModelMapper modelMapper;
+  private CreateTransactionDTO dto;
+
+  @Setup
+  public void setup() {
+    modelMapper = new ModelMapper();
+    dto = new CreateTransactionDTO();
+    dto.setAccountId("6270a1f3c2b54d1a8e0f9b21");
+    dto.setAgent("BCP Huacho - Ventanilla 021");
+    dto.setDescription("Deposito ventanilla");
+    dto.setAmount(Money.ofMinor(152075));
+    modelMapper.map(dto, Transaction.class); // el primer map construye el TypeMap, fuera de la medicion
+  }
+
+  @Benchmark
+  public Transaction modelMapper() {
+    return modelMapper.map(dto, Transaction.class);
+  }
+
+  @Benchmark
+  public Transaction explicitMapper() {
+    return TransactionMapper.toTransaction(dto);
+  }
+}
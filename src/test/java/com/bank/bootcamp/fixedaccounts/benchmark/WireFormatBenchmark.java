@@ -0,0 +1,102 @@
+package com.bank.bootcamp.fixedaccounts.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import com.bank.bootcamp.fixedaccounts.dto.BalanceDTO;
+import com.bank.bootcamp.fixedaccounts.entity.Money;
+import com.bank.bootcamp.fixedaccounts.entity.Transaction;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * JSON vs Smile on the DTOs exchanged between product services.
+ * Payload sizes are printed once per trial next to the timings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+  @Param({ "1", "50" })
+  private int size;
+
+  private ObjectMapper json;
+  private ObjectMapper smile;
+  private List<BalanceDTO> balances;
+  private List<Transaction> transactions;
+  private byte[] jsonTransactions;
+  private byte[] smileTransactions;
+
+  @Setup
+  public void setup() throws Exception {
+    json = Jackson2ObjectMapperBuilder.json().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+    smile = Jackson2ObjectMapperBuilder.json().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).factory(new SmileFactory()).build();
+    balances = new ArrayList<>();
+    transactions = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      var balance = new BalanceDTO();
+      balance.setAccountId(UUID.randomUUID().toString());
+      balance.setType("Fixed Account");
+      balance.setAccountNumber(100000 + i);
+      balance.setAmount(Money.ofMinor(152075 + i));
+      balance.setMonthlyMovementLimit(1);
+      balance.setMonthlyMovementsAvailable(1L);
+      balances.add(balance);
+
+      var transaction = new Transaction();
+      transaction.setId(UUID.randomUUID().toString());
+      transaction.setOperationNumber(i);
+      transaction.setRegisterDate(LocalDateTime.now());
+      transaction.setAccountId(balance.getAccountId());
+      transaction.setAgent("BCP Huacho - Ventanilla 021");
+      transaction.setDescription("Deposito ventanilla");
+      transaction.setAmount(Money.ofMinor(10000 + i));
+      transactions.add(transaction);
+    }
+    jsonTransactions = json.writeValueAsBytes(transactions);
+    smileTransactions = smile.writeValueAsBytes(transactions);
+    System.out.printf("%n[size=%d] balances json=%d bytes smile=%d bytes, transactions json=%d bytes smile=%d bytes%n", size,
+        json.writeValueAsBytes(balances).length, smile.writeValueAsBytes(balances).length,
+        jsonTransactions.length, smileTransactions.length);
+  }
+
+  @Benchmark
+  public byte[] writeBalancesJson() throws Exception {
+    return json.writeValueAsBytes(balances);
+  }
+
+  @Benchmark
+  public byte[] writeBalancesSmile() throws Exception {
+    return smile.writeValueAsBytes(balances);
+  }
+
+  @Benchmark
+  public List<Transaction> readTransactionsJson() throws Exception {
+    return json.readValue(jsonTransactions, new TypeReference<List<Transaction>>() {});
+  }
+
+  @Benchmark
+  public List<Transaction> readTransactionsSmile() throws Exception {
+    return smile.readValue(smileTransactions, new TypeReference<List<Transaction>>() {});
+  }
+}